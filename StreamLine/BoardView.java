@@ -0,0 +1,229 @@
+/**
+ * File: BoardView.java
+ *
+ * This file creates the obstacles and trail of the board in the GUI. Only
+ * the squares in and around the window are ever given shapes, so a level
+ * of millions of squares is drawn with as many shapes as one that fits in
+ * the window.
+ */
+
+import javafx.scene.Group;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+
+/**
+ * This class holds one slot for each square of the window, plus a margin of
+ * MARGIN squares on every side, and each slot has an obstacle square and a
+ * trail circle, of which it shows the one its square calls for. The square
+ * (row, col) always goes in slot (row % slotRows, col % slotCols), so when
+ * the window moves, a slot that leaves it is given the square that comes
+ * into view a whole window further on, and the slots of squares still in
+ * view are left alone. Positions are in board units, where square
+ * (row, col) is centered at (col + 0.5, row + 0.5), as in SlideAnimator.
+ *
+ * Colors are read from the board of the game whenever a slot is given a
+ * square, so squares changed while they were out of view are drawn as they
+ * are once they come back.
+ */
+
+public class BoardView extends Group {
+    // squares kept past each edge of the window
+    static final int MARGIN = 2;
+
+    private Streamline game;
+    private int boardHeight;
+    private int boardWidth;
+
+    // squares in the window and its margin, the last ones excluded
+    private int firstRow;
+    private int firstCol;
+    private int lastRow;
+    private int lastCol;
+
+    // slots by slotRow * slotCols + slotCol, and the square each one shows
+    private int slotRows;
+    private int slotCols;
+    private RoundedSquare[] obstacles = new RoundedSquare[0];
+    private Circle[] trails = new Circle[0];
+    private int[] rows = new int[0];
+    private int[] cols = new int[0];
+
+    /**
+     * Shows the given level. No square is shown until setWindow() is
+     * called.
+     *
+     * @param game the level to show
+     */
+
+    public void show(Streamline game) {
+        this.game = game;
+        this.boardHeight = game.currentState.board.length;
+        this.boardWidth = game.currentState.board[0].length;
+        firstRow = 0;
+        firstCol = 0;
+        lastRow = 0;
+        lastCol = 0;
+        for(int slot = 0; slot < rows.length; slot++) {
+            clear(slot);
+        }
+    }
+
+    /**
+     * Gives shapes to the squares in the given part of the board and its
+     * margin, taking them from squares that left it
+     *
+     * @param left   left edge of the window, in board units
+     * @param top    top edge of the window, in board units
+     * @param right  right edge of the window, in board units
+     * @param bottom bottom edge of the window, in board units
+     */
+
+    public void setWindow(double left, double top, double right,
+            double bottom) {
+        int newFirstRow = Math.max(0, (int) Math.floor(top) - MARGIN);
+        int newFirstCol = Math.max(0, (int) Math.floor(left) - MARGIN);
+        int newLastRow = Math.min(boardHeight,
+                (int) Math.ceil(bottom) + MARGIN);
+        int newLastCol = Math.min(boardWidth,
+                (int) Math.ceil(right) + MARGIN);
+        if(newFirstRow == firstRow && newFirstCol == firstCol &&
+                newLastRow == lastRow && newLastCol == lastCol) {
+            return;
+        }
+        firstRow = newFirstRow;
+        firstCol = newFirstCol;
+        lastRow = Math.max(newFirstRow, newLastRow);
+        lastCol = Math.max(newFirstCol, newLastCol);
+
+        // more slots once the window holds more squares than there are
+        if(lastRow - firstRow > slotRows || lastCol - firstCol > slotCols) {
+            createSlots(Math.max(slotRows, lastRow - firstRow),
+                    Math.max(slotCols, lastCol - firstCol));
+        }
+
+        for(int slotRow = 0; slotRow < slotRows; slotRow++) {
+            // the one row in the window that goes in this slot row, if any
+            int row = firstRow + Math.floorMod(slotRow - firstRow, slotRows);
+            for(int slotCol = 0; slotCol < slotCols; slotCol++) {
+                int col = firstCol + Math.floorMod(slotCol - firstCol,
+                        slotCols);
+                int slot = slotRow * slotCols + slotCol;
+                if(row >= lastRow || col >= lastCol) {
+                    clear(slot);
+                }
+                else if(rows[slot] != row || cols[slot] != col) {
+                    place(slot, row, col);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the slots with a larger set, keeping the shapes already made
+     *
+     * @param newRows slot rows
+     * @param newCols slot columns
+     */
+
+    private void createSlots(int newRows, int newCols) {
+        RoundedSquare[] newObstacles = new RoundedSquare[newRows * newCols];
+        Circle[] newTrails = new Circle[newRows * newCols];
+        for(int slot = 0; slot < newObstacles.length; slot++) {
+            boolean kept = slot < obstacles.length;
+            newObstacles[slot] = kept ? obstacles[slot] : new RoundedSquare();
+            newTrails[slot] = kept ? trails[slot] : new Circle();
+            newObstacles[slot].setSize(GuiStreamline.SQUARE_FRACTION);
+            newObstacles[slot].setFill(GuiStreamline.OBSTACLE_COLOR);
+            newTrails[slot].setRadius(GuiStreamline.TRAIL_RADIUS_FRACTION);
+        }
+        obstacles = newObstacles;
+        trails = newTrails;
+        rows = new int[newRows * newCols];
+        cols = new int[newRows * newCols];
+        slotRows = newRows;
+        slotCols = newCols;
+        for(int slot = 0; slot < rows.length; slot++) {
+            clear(slot);
+        }
+
+        // swaps the children in one change instead of one per shape
+        getChildren().setAll(obstacles);
+        getChildren().addAll(trails);
+    }
+
+    /**
+     * Hides the shapes of a slot
+     *
+     * @param slot the slot to hide
+     */
+
+    private void clear(int slot) {
+        rows[slot] = -1;
+        cols[slot] = -1;
+        obstacles[slot].setVisible(false);
+        trails[slot].setVisible(false);
+    }
+
+    /**
+     * Moves a slot to a square and shows what the square holds
+     *
+     * @param slot the slot to move
+     * @param row  row of the square
+     * @param col  column of the square
+     */
+
+    private void place(int slot, int row, int col) {
+        rows[slot] = row;
+        cols[slot] = col;
+        double centerX = col + GuiStreamline.MIDDLE_OFFSET;
+        double centerY = row + GuiStreamline.MIDDLE_OFFSET;
+        obstacles[slot].setCenterX(centerX);
+        obstacles[slot].setCenterY(centerY);
+        trails[slot].setCenterX(centerX);
+        trails[slot].setCenterY(centerY);
+        update(slot);
+    }
+
+    /**
+     * Shows the obstacle or the trail of a slot, as its square now holds
+     *
+     * @param slot the slot to update
+     */
+
+    private void update(int slot) {
+        char square = game.currentState.board[rows[slot]][cols[slot]];
+        boolean obstacle = square == GameState.OBSTACLE_CHAR;
+        obstacles[slot].setVisible(obstacle);
+        trails[slot].setVisible(!obstacle);
+        trails[slot].setFill(square == GameState.TRAIL_CHAR ?
+                GuiStreamline.TRAIL_COLOR : Color.TRANSPARENT);
+    }
+
+    /**
+     * Redraws a square after the board changed it. Squares without a slot
+     * are skipped, since they are read again when they come into view.
+     *
+     * @param row row of the square
+     * @param col column of the square
+     */
+
+    public void updateSquare(int row, int col) {
+        if(slotRows == 0 || row < firstRow || row >= lastRow ||
+                col < firstCol || col >= lastCol) {
+            return;
+        }
+        update((row % slotRows) * slotCols + col % slotCols);
+    }
+
+    /**
+     * Redraws every square that has a slot, after the whole board changed
+     */
+
+    public void refresh() {
+        for(int slot = 0; slot < rows.length; slot++) {
+            if(rows[slot] >= 0) {
+                update(slot);
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * File: ChunkedBoard.java
+ *
+ * Included below is a sparse board for levels far too large for a dense
+ * char[][]. The board is cut into square tiles that are only allocated once
+ * something is placed on them, so memory grows with the number of obstacles
+ * and trail squares rather than with the area of the board.
+ */
+
+/**
+ * The ChunkedBoard class stores a board as tiles of TILE_SIZE by TILE_SIZE
+ * squares. Each tile keeps one bit per square for obstacles and one for
+ * trail. Every tile starts out as the shared EMPTY tile, which is never
+ * written; the first write to a square swaps in a tile of its own. Rows of
+ * the tile index are allocated lazily as well, so an empty board costs one
+ * reference per row of tiles.
+ */
+
+public class ChunkedBoard {
+
+    // squares along each side of a tile, as a power of two
+    static final int TILE_SHIFT = 6;
+    static final int TILE_SIZE = 1 << TILE_SHIFT;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+
+    // 64 squares fit in the bits of one long
+    private static final int WORD_SHIFT = 6;
+    private static final int WORDS_PER_TILE =
+        TILE_SIZE * TILE_SIZE >> WORD_SHIFT;
+
+    /**
+     * The Tile class holds the obstacle and trail bits of one tile
+     */
+
+    static class Tile {
+        final long[] obstacles = new long[WORDS_PER_TILE];
+        final long[] trail = new long[WORDS_PER_TILE];
+    }
+
+    // shared by every tile with nothing on it
+    static final Tile EMPTY = new Tile();
+
+    final int height;
+    final int width;
+
+    // tiles by tile row and tile column; a null row or tile is EMPTY
+    private final Tile[][] tiles;
+
+    // number of tiles that are not EMPTY
+    private int tileCount;
+
+    /**
+     * Creates an empty board of the given size
+     *
+     * @param int height height of board
+     * @param int width width of board
+     */
+
+    public ChunkedBoard(int height, int width) {
+        this.height = height;
+        this.width = width;
+        this.tiles = new Tile[(height + TILE_MASK) >> TILE_SHIFT][];
+    }
+
+    /**
+     * Returns the tile holding the given square, EMPTY if nothing was ever
+     * placed on it.
+     *
+     * @param int row row of the square
+     * @param int col column of the square
+     * @return Tile tile of the square
+     */
+
+    private Tile tileAt(int row, int col) {
+        Tile[] tileRow = tiles[row >> TILE_SHIFT];
+        if(tileRow == null) {
+            return EMPTY;
+        }
+        Tile tile = tileRow[col >> TILE_SHIFT];
+        return tile == null ? EMPTY : tile;
+    }
+
+    /**
+     * Returns the tile holding the given square, giving it a tile of its own
+     * first if it still shares EMPTY.
+     *
+     * @param int row row of the square
+     * @param int col column of the square
+     * @return Tile writable tile of the square
+     */
+
+    private Tile writableTileAt(int row, int col) {
+        Tile[] tileRow = tiles[row >> TILE_SHIFT];
+        if(tileRow == null) {
+            tileRow = new Tile[(width + TILE_MASK) >> TILE_SHIFT];
+            tiles[row >> TILE_SHIFT] = tileRow;
+        }
+        Tile tile = tileRow[col >> TILE_SHIFT];
+        if(tile == null) {
+            tile = new Tile();
+            tileRow[col >> TILE_SHIFT] = tile;
+            tileCount++;
+        }
+        return tile;
+    }
+
+    /**
+     * Returns the index of the bit of a square within its tile
+     *
+     * @param int row row of the square
+     * @param int col column of the square
+     * @return int bit index
+     */
+
+    private static int bitIndex(int row, int col) {
+        return ((row & TILE_MASK) << TILE_SHIFT) | (col & TILE_MASK);
+    }
+
+    /**
+     * Returns what the given square holds, using the characters of GameState
+     *
+     * @param int row row of the square
+     * @param int col column of the square
+     * @return char OBSTACLE_CHAR, TRAIL_CHAR or SPACE_CHAR
+     */
+
+    char get(int row, int col) {
+        Tile tile = tileAt(row, col);
+        if(tile == EMPTY) {
+            return GameState.SPACE_CHAR;
+        }
+        int bit = bitIndex(row, col);
+        long mask = 1L << bit;
+        if((tile.obstacles[bit >> WORD_SHIFT] & mask) != 0) {
+            return GameState.OBSTACLE_CHAR;
+        }
+        if((tile.trail[bit >> WORD_SHIFT] & mask) != 0) {
+            return GameState.TRAIL_CHAR;
+        }
+        return GameState.SPACE_CHAR;
+    }
+
+    /**
+     * Places the given character on a square. Any character other than
+     * TRAIL_CHAR and SPACE_CHAR blocks the player and is kept as an
+     * obstacle. Clearing a square never allocates.
+     *
+     * @param int row row of the square
+     * @param int col column of the square
+     * @param char square character to place
+     */
+
+    void set(int row, int col, char square) {
+        int bit = bitIndex(row, col);
+        long mask = 1L << bit;
+        if(square == GameState.SPACE_CHAR) {
+            Tile tile = tileAt(row, col);
+            if(tile != EMPTY) {
+                tile.obstacles[bit >> WORD_SHIFT] &= ~mask;
+                tile.trail[bit >> WORD_SHIFT] &= ~mask;
+            }
+            return;
+        }
+        Tile tile = writableTileAt(row, col);
+        if(square == GameState.TRAIL_CHAR) {
+            tile.obstacles[bit >> WORD_SHIFT] &= ~mask;
+            tile.trail[bit >> WORD_SHIFT] |= mask;
+        }
+        else {
+            tile.trail[bit >> WORD_SHIFT] &= ~mask;
+            tile.obstacles[bit >> WORD_SHIFT] |= mask;
+        }
+    }
+
+    /**
+     * Returns the number of tiles that have been allocated
+     *
+     * @return int allocated tiles
+     */
+
+    int getTileCount() {
+        return tileCount;
+    }
+}
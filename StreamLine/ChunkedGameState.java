@@ -0,0 +1,273 @@
+/**
+ * File: ChunkedGameState.java
+ *
+ * Included below is a game state for marathon levels, boards so large that
+ * GameState's dense char[][] cannot be allocated. It plays by exactly the same
+ * rules as GameState but keeps its board in a sparse ChunkedBoard.
+ */
+
+import java.io.*;
+
+/**
+ * The ChunkedGameState class mirrors the fields and moves of GameState on top
+ * of a ChunkedBoard. Levels are read from the usual saveToFile() format one
+ * line at a time, so neither the file nor the board is ever held densely, and
+ * the board can be drawn as a whole or as a window around the player.
+ */
+
+public class ChunkedGameState {
+
+    // sparse map of the board
+    ChunkedBoard board;
+
+    // Location of the player
+    int playerRow;
+    int playerCol;
+
+    // Location of the goal
+    int goalRow;
+    int goalCol;
+
+    // true means the player completed this level
+    boolean levelPassed;
+
+    // borders of game board, as drawn by GameState
+    private static final char UPPER_BORDER = '-';
+    private static final int UPPER_BORDER_MULTIPLE = 2;
+    private static final int UPPER_BORDER_EXTRA = 3;
+    private static final char SIDE_BORDER = '|';
+
+    /**
+     * Initializes an empty board with the given parameters
+     *
+     * @param int height height of board
+     * @param int width width of board
+     * @param int playerRow row of the player
+     * @param int playerCol column of the player
+     * @param int goalRow row of the goal
+     * @param int goalCol column of the goal
+     */
+
+    public ChunkedGameState(int height, int width, int playerRow,
+                            int playerCol, int goalRow, int goalCol) {
+        this.board = new ChunkedBoard(height, width);
+        this.playerRow = playerRow;
+        this.playerCol = playerCol;
+        this.goalRow = goalRow;
+        this.goalCol = goalCol;
+        this.levelPassed = false;
+    }
+
+    /**
+     * Reads a level in the format written by Streamline.saveToFile(). Only
+     * squares that are not SPACE_CHAR touch the board, and rows shorter than
+     * the width are padded with spaces.
+     *
+     * @param String filename name of file to read
+     * @return ChunkedGameState level stored in the file
+     */
+
+    static ChunkedGameState load(String filename) throws IOException {
+        try(BufferedReader reader = new BufferedReader(
+                    new FileReader(filename))) {
+            int[] header = new int[6];
+            int count = 0;
+            // gets the height, width, player and goal, however they are
+            // spread over the first lines
+            while(count < header.length) {
+                String line = reader.readLine();
+                if(line == null) {
+                    throw new EOFException(filename);
+                }
+                for(String token : line.trim().split("\\s+")) {
+                    if(!token.isEmpty()) {
+                        header[count++] = Integer.parseInt(token);
+                    }
+                }
+            }
+            ChunkedGameState state = new ChunkedGameState(header[0],
+                    header[1], header[2], header[3], header[4], header[5]);
+
+            // gets the obstacles, empty spaces, and trails
+            for(int i = 0; i < state.getHeight(); i++) {
+                String line = reader.readLine();
+                if(line == null) {
+                    break;
+                }
+                int length = Math.min(line.length(), state.getWidth());
+                for(int j = 0; j < length; j++) {
+                    if(line.charAt(j) != GameState.SPACE_CHAR) {
+                        state.board.set(i, j, line.charAt(j));
+                    }
+                }
+            }
+            return state;
+        }
+    }
+
+    /**
+     * Returns the height of the board
+     *
+     * @return int height of board
+     */
+
+    int getHeight() {
+        return board.height;
+    }
+
+    /**
+     * Returns the width of the board
+     *
+     * @return int width of board
+     */
+
+    int getWidth() {
+        return board.width;
+    }
+
+    /**
+     * Moves towards the given direction, leaving a trail, until stopped by
+     * an obstacle, trail, edge or the goal, exactly like GameState.move().
+     *
+     * @param Direction direction the direction to move
+     * @return int number of squares moved, 0 if the player did not move
+     */
+
+    int move(Direction direction) {
+        int rowStep = direction.getRowStep();
+        int colStep = direction.getColStep();
+        int steps = 0;
+        while(true) {
+            int nextRow = playerRow + rowStep;
+            int nextCol = playerCol + colStep;
+            // if there is an edge
+            if(nextRow < 0 || nextRow >= getHeight() || nextCol < 0 ||
+                nextCol >= getWidth()) {
+                return steps;
+            }
+            // if there is a goal
+            if(nextRow == this.goalRow && nextCol == this.goalCol) {
+                this.levelPassed = true;
+                board.set(playerRow, playerCol, GameState.TRAIL_CHAR);
+                this.playerRow = nextRow;
+                this.playerCol = nextCol;
+                return steps + 1;
+            }
+            // if there is an obstacle or trail
+            if(board.get(nextRow, nextCol) != GameState.SPACE_CHAR) {
+                return steps;
+            }
+            // leaves a trail on its path
+            board.set(playerRow, playerCol, GameState.TRAIL_CHAR);
+            this.playerRow = nextRow;
+            this.playerCol = nextCol;
+            steps++;
+        }
+    }
+
+    /**
+     * Takes back a move() by walking back over the trail it left, like
+     * GameState.unslide().
+     *
+     * @param Direction direction the direction of the move
+     * @param int steps number of squares the move went
+     * @param char startChar what the starting square held before the move
+     * @param boolean wasPassed levelPassed before the move
+     */
+
+    void unmove(Direction direction, int steps, char startChar,
+                boolean wasPassed) {
+        for(int i = 0; i < steps; i++) {
+            this.playerRow -= direction.getRowStep();
+            this.playerCol -= direction.getColStep();
+            board.set(playerRow, playerCol, GameState.SPACE_CHAR);
+        }
+        if(steps > 0) {
+            board.set(playerRow, playerCol, startChar);
+        }
+        this.levelPassed = wasPassed;
+    }
+
+    /**
+     * Draws part of the board in the same style as GameState.toString(),
+     * with a border around the part drawn. The window is clipped to the
+     * board.
+     *
+     * @param int top first row to draw
+     * @param int left first column to draw
+     * @param int rows number of rows to draw
+     * @param int cols number of columns to draw
+     * @return String drawn window
+     */
+
+    String render(int top, int left, int rows, int cols) {
+        top = Math.max(0, top);
+        left = Math.max(0, left);
+        int bottom = Math.min(getHeight(), top + rows);
+        int right = Math.min(getWidth(), left + cols);
+
+        StringBuilder drawn = new StringBuilder();
+        appendBorder(drawn, right - left);
+        for(int i = top; i < bottom; i++) {
+            drawn.append(SIDE_BORDER).append(GameState.SPACE_CHAR);
+            for(int j = left; j < right; j++) {
+                // the goal is drawn over the player, as in GameState
+                if(i == goalRow && j == goalCol) {
+                    drawn.append(GameState.GOAL_CHAR);
+                }
+                else if(i == playerRow && j == playerCol) {
+                    drawn.append(GameState.CURRENT_CHAR);
+                }
+                else {
+                    drawn.append(board.get(i, j));
+                }
+                drawn.append(GameState.SPACE_CHAR);
+            }
+            drawn.append(SIDE_BORDER).append(GameState.NEWLINE_CHAR);
+        }
+        appendBorder(drawn, right - left);
+        return drawn.toString();
+    }
+
+    /**
+     * Draws the window of the given size centered on the player, shifted
+     * inwards near the edges of the board.
+     *
+     * @param int rows number of rows to draw
+     * @param int cols number of columns to draw
+     * @return String drawn window
+     */
+
+    String renderAroundPlayer(int rows, int cols) {
+        int top = Math.min(playerRow - rows / 2, getHeight() - rows);
+        int left = Math.min(playerCol - cols / 2, getWidth() - cols);
+        return render(top, left, rows, cols);
+    }
+
+    /**
+     * Adds an upper or lower border for the given number of columns
+     *
+     * @param StringBuilder drawn text to add to
+     * @param int cols number of columns drawn
+     */
+
+    private static void appendBorder(StringBuilder drawn, int cols) {
+        for(int i = 0; i < UPPER_BORDER_MULTIPLE * cols + UPPER_BORDER_EXTRA;
+                i++) {
+            drawn.append(UPPER_BORDER);
+        }
+        drawn.append(GameState.NEWLINE_CHAR);
+    }
+
+    /**
+     * Overrides toString() method. Draws the whole board, which is only
+     * sensible for boards that would also fit in a GameState.
+     *
+     * @return String board as String
+     */
+
+    @Override
+    public String toString() {
+        return render(0, 0, getHeight(), getWidth());
+    }
+}
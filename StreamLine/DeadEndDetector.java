@@ -0,0 +1,355 @@
+/**
+ * File: DeadEndDetector.java
+ *
+ * Included below is a structure that notices, right after a move, that the
+ * trail has cut the player off from the goal. It is kept up to date move by
+ * move, looking only at the squares around the trail a move left, instead of
+ * searching the whole board again.
+ */
+
+import java.util.*;
+
+/**
+ * The DeadEndDetector class labels the open squares of a board by connected
+ * region, where two squares are connected if the player could walk from one
+ * to the other without crossing an obstacle or trail. Every slide passes
+ * only over open squares, so once the player and the goal are in different
+ * regions the level can no longer be passed. The reverse does not hold: the
+ * player may still be lost in a region with the goal if no slide stops where
+ * it needs to, so the detector reports levels that are certainly lost and
+ * never a level that can still be passed.
+ *
+ * Trail only ever grows during a level, so a move can only split a region.
+ * The open squares next to the trail a move left are the only places where
+ * a region can come apart, so a search starts from each of them, and the
+ * searches take turns expanding one square at a time. Searches that meet are
+ * in the same region. Once only one group of searches is left the rest of
+ * the region is untouched, so the cost of a move is the length of its trail
+ * unless it cuts off part of the board, and then it grows with the parts cut
+ * off rather than with the board. Each move keeps the squares it relabeled,
+ * so undoing it restores the labels exactly.
+ */
+
+public class DeadEndDetector {
+
+    // region label of obstacles and trail
+    static final int BLOCKED = -1;
+
+    // all directions in ordinal order
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    // initial length of the queue of a search
+    private static final int INITIAL_QUEUE = 16;
+
+    /**
+     * The Move class remembers what a move changed, to take it back
+     */
+
+    private static class Move {
+        final int start;
+        final Direction direction;
+        final int steps;
+
+        // region of the trail squares before the move
+        final int label;
+
+        // squares that were moved from label to a new region
+        final int[] relabeled;
+
+        Move(int start, Direction direction, int steps, int label,
+             int[] relabeled) {
+            this.start = start;
+            this.direction = direction;
+            this.steps = steps;
+            this.label = label;
+            this.relabeled = relabeled;
+        }
+    }
+
+    private final int height;
+    private final int width;
+    private final int goal;
+    private final boolean passed;
+
+    // region of every square by row * width + col, or BLOCKED
+    private final int[] region;
+    private int nextLabel;
+    private int player;
+
+    // moves made since the detector was built
+    private final List<Move> history = new ArrayList<Move>();
+
+    // search that reached each square, valid where visit == stamp
+    private final int[] visit;
+    private final int[] owner;
+    private int stamp;
+
+    /**
+     * Labels the regions of the given state
+     *
+     * @param GameState state state to start from
+     */
+
+    DeadEndDetector(GameState state) {
+        this.height = state.board.length;
+        this.width = state.board[0].length;
+        this.goal = state.goalRow * width + state.goalCol;
+        this.passed = state.levelPassed;
+        this.player = state.playerRow * width + state.playerCol;
+        this.region = new int[height * width];
+        this.visit = new int[height * width];
+        this.owner = new int[height * width];
+
+        for(int row = 0; row < height; row++) {
+            for(int col = 0; col < width; col++) {
+                char square = state.board[row][col];
+                int index = row * width + col;
+                // the player and goal squares are open whatever they hold
+                region[index] = square == GameState.SPACE_CHAR ||
+                    index == player || index == goal ? 0 : BLOCKED;
+            }
+        }
+
+        // labels each region with a flood fill
+        int[] queue = new int[height * width];
+        for(int square = 0; square < region.length; square++) {
+            if(region[square] != 0) {
+                continue;
+            }
+            int label = ++nextLabel;
+            int head = 0;
+            int tail = 0;
+            region[square] = label;
+            queue[tail++] = square;
+            while(head < tail) {
+                int current = queue[head++];
+                for(Direction direction : DIRECTIONS) {
+                    int next = neighbor(current, direction);
+                    if(next >= 0 && region[next] == 0) {
+                        region[next] = label;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the square next to the given one
+     *
+     * @param int square row * width + col
+     * @param Direction direction direction to look in
+     * @return int the neighboring square, or -1 past an edge
+     */
+
+    private int neighbor(int square, Direction direction) {
+        int row = square / width + direction.getRowStep();
+        int col = square % width + direction.getColStep();
+        if(row < 0 || row >= height || col < 0 || col >= width) {
+            return -1;
+        }
+        return row * width + col;
+    }
+
+    /**
+     * Returns true if the player can no longer reach the goal
+     *
+     * @return boolean true if the level is lost
+     */
+
+    boolean isDeadEnd() {
+        return !passed && player != goal && region[player] != region[goal];
+    }
+
+    /**
+     * Returns true if there is a move to take back with undo()
+     *
+     * @return boolean true after a move
+     */
+
+    boolean canUndo() {
+        return !history.isEmpty();
+    }
+
+    /**
+     * Returns the number of moves undo() can take back
+     *
+     * @return int moves since the detector was built
+     */
+
+    int getMoveCount() {
+        return history.size();
+    }
+
+    /**
+     * Takes back every move, newest first, which leaves the regions as they
+     * were when the detector was built. Only the squares the moves changed
+     * are touched.
+     */
+
+    void restart() {
+        while(!history.isEmpty()) {
+            undo();
+        }
+    }
+
+    /**
+     * Updates the regions after a slide, which left trail on the start
+     * square and every square passed
+     *
+     * @param int fromRow row the slide started on
+     * @param int fromCol column the slide started on
+     * @param Direction direction direction of the slide
+     * @param int steps squares moved, more than 0
+     */
+
+    void moved(int fromRow, int fromCol, Direction direction, int steps) {
+        int start = fromRow * width + fromCol;
+        int label = region[start];
+        int step = direction.getRowStep() * width + direction.getColStep();
+        for(int i = 0; i < steps; i++) {
+            region[start + i * step] = BLOCKED;
+        }
+        player = start + steps * step;
+
+        // the open squares next to the trail are where the region may split
+        stamp++;
+        List<int[]> queues = new ArrayList<int[]>();
+        for(int i = 0; i < steps; i++) {
+            for(Direction side : DIRECTIONS) {
+                int seed = neighbor(start + i * step, side);
+                if(seed >= 0 && region[seed] != BLOCKED &&
+                        visit[seed] != stamp) {
+                    visit[seed] = stamp;
+                    owner[seed] = queues.size();
+                    int[] queue = new int[INITIAL_QUEUE];
+                    queue[0] = seed;
+                    queues.add(queue);
+                }
+            }
+        }
+        history.add(new Move(start, direction, steps, label,
+                    split(queues)));
+    }
+
+    /**
+     * Runs the searches from the given seeds in turns until all but one
+     * group of them have met or run out of squares, and gives every group
+     * that ran out a region of its own
+     *
+     * @param List<int[]> queues one queue per search, holding its seed
+     * @return int[] squares given a new region
+     */
+
+    private int[] split(List<int[]> queues) {
+        int searches = queues.size();
+        int[] heads = new int[searches];
+        int[] tails = new int[searches];
+        Arrays.fill(tails, 1);
+
+        // groups of searches that met, and how many of each still run
+        int[] parent = new int[searches];
+        int[] running = new int[searches];
+        for(int i = 0; i < searches; i++) {
+            parent[i] = i;
+            running[i] = 1;
+        }
+        int groups = searches;
+
+        int[] relabeled = new int[0];
+        int relabeledCount = 0;
+        while(groups > 1) {
+            for(int i = 0; i < searches && groups > 1; i++) {
+                if(heads[i] == tails[i]) {
+                    continue;
+                }
+                int[] queue = queues.get(i);
+                int current = queue[heads[i]++];
+                for(Direction direction : DIRECTIONS) {
+                    int next = neighbor(current, direction);
+                    if(next < 0 || region[next] == BLOCKED) {
+                        continue;
+                    }
+                    if(visit[next] != stamp) {
+                        visit[next] = stamp;
+                        owner[next] = i;
+                        if(tails[i] == queue.length) {
+                            queue = Arrays.copyOf(queue, 2 * queue.length);
+                            queues.set(i, queue);
+                        }
+                        queue[tails[i]++] = next;
+                        continue;
+                    }
+                    // another search got here, so they share a region
+                    int mine = find(parent, i);
+                    int theirs = find(parent, owner[next]);
+                    if(mine != theirs) {
+                        parent[theirs] = mine;
+                        running[mine] += running[theirs];
+                        groups--;
+                    }
+                }
+                if(heads[i] < tails[i]) {
+                    continue;
+                }
+
+                // a group whose searches all ran out is a region of its own
+                int root = find(parent, i);
+                if(--running[root] > 0) {
+                    continue;
+                }
+                int label = ++nextLabel;
+                for(int j = 0; j < searches; j++) {
+                    if(find(parent, j) != root) {
+                        continue;
+                    }
+                    int[] found = queues.get(j);
+                    if(relabeledCount + tails[j] > relabeled.length) {
+                        relabeled = Arrays.copyOf(relabeled, Math.max(
+                                    2 * relabeled.length,
+                                    relabeledCount + tails[j]));
+                    }
+                    for(int k = 0; k < tails[j]; k++) {
+                        region[found[k]] = label;
+                        relabeled[relabeledCount++] = found[k];
+                    }
+                }
+                groups--;
+            }
+        }
+        return Arrays.copyOf(relabeled, relabeledCount);
+    }
+
+    /**
+     * Returns the group a search belongs to
+     *
+     * @param int[] parent parent of every search
+     * @param int search search to look up
+     * @return int first search of its group
+     */
+
+    private static int find(int[] parent, int search) {
+        while(parent[search] != search) {
+            parent[search] = parent[parent[search]];
+            search = parent[search];
+        }
+        return search;
+    }
+
+    /**
+     * Takes back the last move given to moved()
+     */
+
+    void undo() {
+        Move move = history.remove(history.size() - 1);
+        for(int square : move.relabeled) {
+            region[square] = move.label;
+        }
+        int step = move.direction.getRowStep() * width +
+            move.direction.getColStep();
+        for(int i = 0; i < move.steps; i++) {
+            region[move.start + i * step] = move.label;
+        }
+        player = move.start;
+    }
+}
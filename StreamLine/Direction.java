@@ -1,23 +1,29 @@
 /**
- * An enumerator defining the 4 possible move directions in a 
+ * An enumerator defining the 4 possible move directions in a
  * Streamline game
  */
 
 public enum Direction {
-    RIGHT(0), 
-    UP(1), 
-    LEFT(2), 
-    DOWN(3)
+    RIGHT(0, 0, 1),
+    UP(1, -1, 0),
+    LEFT(2, 0, -1),
+    DOWN(3, 1, 0)
     ;
 
     private int rotationCount;
+    private int rowStep;
+    private int colStep;
 
     /**
      * Constructor
      * @param rotationCount see getRotationCount()
+     * @param rowStep see getRowStep()
+     * @param colStep see getColStep()
      */
-    Direction(int rotationCount) {
+    Direction(int rotationCount, int rowStep, int colStep) {
         this.rotationCount = rotationCount;
+        this.rowStep = rowStep;
+        this.colStep = colStep;
     }
 
     /**
@@ -28,5 +34,23 @@ public enum Direction {
      */
     public int getRotationCount() {
         return this.rotationCount;
-    } 
+    }
+
+    /**
+     * Returns the change in row of a single step in this direction
+     * on an unrotated board.
+     * @return -1, 0 or 1
+     */
+    public int getRowStep() {
+        return this.rowStep;
+    }
+
+    /**
+     * Returns the change in column of a single step in this direction
+     * on an unrotated board.
+     * @return -1, 0 or 1
+     */
+    public int getColStep() {
+        return this.colStep;
+    }
 }
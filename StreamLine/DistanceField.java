@@ -0,0 +1,163 @@
+/**
+ * File: DistanceField.java
+ *
+ * Included below is a precomputed distance-to-goal field for a single level.
+ * It is built once with a reverse breadth-first search from the goal over
+ * the slide graph formed by the obstacles, so that asking for a hint is a
+ * constant time lookup instead of a search.
+ */
+
+import java.util.*;
+
+/**
+ * The DistanceField class stores, for every square of a board, the minimum
+ * number of moves needed to reach the goal from that square and the
+ * direction of the first of those moves. Trails are ignored: a trail blocks
+ * some slides but also stops others early, so once the player has left a
+ * trail the field is only a guide, and a square it marks UNREACHABLE may
+ * still reach the goal by stopping against the trail. Squares are indexed by
+ * row * width + col.
+ */
+
+public class DistanceField {
+
+    // distance stored for squares that can never reach the goal
+    static final int UNREACHABLE = -1;
+
+    // best direction stored for the goal and unreachable squares
+    private static final byte NO_DIRECTION = -1;
+
+    // all directions in ordinal order
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    // dimensions of the board the field was built for
+    final int height;
+    final int width;
+
+    // location of the goal
+    final int goalRow;
+    final int goalCol;
+
+    // minimum remaining moves for every square, or UNREACHABLE
+    private final int[] distance;
+
+    // ordinal of the first move on a shortest path, or NO_DIRECTION
+    private final byte[] bestDirection;
+
+    /**
+     * Builds the field for the obstacles and goal of the given state. The
+     * player position and any trail on the board do not matter.
+     *
+     * @param GameState state level to build the field for
+     */
+
+    public DistanceField(GameState state) {
+        this.height = state.board.length;
+        this.width = state.board[0].length;
+        this.goalRow = state.goalRow;
+        this.goalCol = state.goalCol;
+        this.distance = new int[height * width];
+        this.bestDirection = new byte[height * width];
+        Arrays.fill(distance, UNREACHABLE);
+        Arrays.fill(bestDirection, NO_DIRECTION);
+
+        int[] queue = new int[height * width];
+        int head = 0;
+        int tail = 0;
+        int goal = goalRow * width + goalCol;
+        distance[goal] = 0;
+        queue[tail++] = goal;
+
+        while(head < tail) {
+            int stop = queue[head++];
+            int stopRow = stop / width;
+            int stopCol = stop % width;
+            for(Direction direction : DIRECTIONS) {
+                // a slide only ends here if it is the goal or blocked ahead
+                if(stop != goal && isOpen(state, stopRow + direction
+                        .getRowStep(), stopCol + direction.getColStep())) {
+                    continue;
+                }
+                // every open square behind it slides into it
+                int row = stopRow - direction.getRowStep();
+                int col = stopCol - direction.getColStep();
+                while(isOpen(state, row, col) && !isGoal(row, col)) {
+                    int square = row * width + col;
+                    if(distance[square] == UNREACHABLE) {
+                        distance[square] = distance[stop] + 1;
+                        bestDirection[square] = (byte) direction.ordinal();
+                        queue[tail++] = square;
+                    }
+                    row -= direction.getRowStep();
+                    col -= direction.getColStep();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if the given square is on the board and the player could
+     * pass through it if there were no trail.
+     *
+     * @param GameState state level being searched
+     * @param int row row of the square
+     * @param int col column of the square
+     * @return boolean true if the square does not stop a slide
+     */
+
+    private boolean isOpen(GameState state, int row, int col) {
+        if(row < 0 || row >= height || col < 0 || col >= width) {
+            return false;
+        }
+        // the goal is always entered, whatever is drawn underneath it
+        if(isGoal(row, col)) {
+            return true;
+        }
+        char square = state.board[row][col];
+        return square == GameState.SPACE_CHAR ||
+            square == GameState.TRAIL_CHAR;
+    }
+
+    /**
+     * Returns true if the given square is the goal
+     *
+     * @param int row row of the square
+     * @param int col column of the square
+     * @return boolean true if the square is the goal
+     */
+
+    private boolean isGoal(int row, int col) {
+        return row == goalRow && col == goalCol;
+    }
+
+    /**
+     * Returns the minimum number of moves from the given square to the goal,
+     * ignoring trails.
+     *
+     * @param int row row of the square
+     * @param int col column of the square
+     * @return int remaining moves, or UNREACHABLE
+     */
+
+    public int distanceToGoal(int row, int col) {
+        return distance[row * width + col];
+    }
+
+    /**
+     * Returns the first move of a shortest path from the given square to the
+     * goal, ignoring trails.
+     *
+     * @param int row row of the square
+     * @param int col column of the square
+     * @return Direction best next move, or null at the goal or when the goal
+     *         cannot be reached
+     */
+
+    public Direction bestDirection(int row, int col) {
+        byte ordinal = bestDirection[row * width + col];
+        if(ordinal == NO_DIRECTION) {
+            return null;
+        }
+        return DIRECTIONS[ordinal];
+    }
+}
@@ -51,9 +51,6 @@ public class GameState {
     private static final String SIDE_BORDER = "|";
     private static final char EDGE_CHAR = '|';
 
-    // empty string
-    private static final String EMPTY_STRING = "";
-
     // 360 rotation
     private static final int MAX_ROTATIONS = 4;
 
@@ -277,6 +274,71 @@ public class GameState {
         return;
     }
 
+    /**
+     * Moves towards the given direction like move() does, but walks the
+     * unrotated board directly instead of rotating it, so nothing is
+     * allocated. Searches use this together with unslide() to explore moves
+     * on a single state.
+     *
+     * @param Direction direction the direction to move
+     * @return int number of squares moved, 0 if the player did not move
+     */
+
+    int slide(Direction direction) {
+        int rowStep = direction.getRowStep();
+        int colStep = direction.getColStep();
+        int steps = 0;
+        while(true) {
+            int nextRow = playerRow + rowStep;
+            int nextCol = playerCol + colStep;
+            // if there is an edge
+            if(nextRow < 0 || nextRow >= this.board.length || nextCol < 0 ||
+                nextCol >= this.board[0].length) {
+                return steps;
+            }
+            // if there is a goal
+            if(nextRow == this.goalRow && nextCol == this.goalCol) {
+                this.levelPassed = true;
+                this.board[playerRow][playerCol] = TRAIL_CHAR;
+                this.playerRow = nextRow;
+                this.playerCol = nextCol;
+                return steps + 1;
+            }
+            // if there is an obstacle, edge or trail
+            if(this.board[nextRow][nextCol] != SPACE_CHAR) {
+                return steps;
+            }
+            // leaves a trail on its path
+            this.board[playerRow][playerCol] = TRAIL_CHAR;
+            this.playerRow = nextRow;
+            this.playerCol = nextCol;
+            steps++;
+        }
+    }
+
+    /**
+     * Takes back a slide() by walking back over the trail it left and
+     * clearing it.
+     *
+     * @param Direction direction the direction of the slide
+     * @param int steps number of squares the slide moved
+     * @param char startChar what the starting square held before the slide
+     * @param boolean wasPassed levelPassed before the slide
+     */
+
+    void unslide(Direction direction, int steps, char startChar,
+                 boolean wasPassed) {
+        for(int i = 0; i < steps; i++) {
+            this.playerRow -= direction.getRowStep();
+            this.playerCol -= direction.getColStep();
+            this.board[playerRow][playerCol] = SPACE_CHAR;
+        }
+        if(steps > 0) {
+            this.board[playerRow][playerCol] = startChar;
+        }
+        this.levelPassed = wasPassed;
+    }
+
     /**
      * Overrides equals() method. Compares two GameState objects and returns 
      * true if all fields match.
@@ -326,6 +388,31 @@ public class GameState {
         return false;
     }
 
+    /**
+     * Returns a 64 bit fingerprint of the board, player and goal. Equal states
+     * always have equal fingerprints.
+     *
+     * @param  none
+     * @return long fingerprint
+     */
+
+    long fingerprint() {
+        return LevelSymmetry.fingerprint(this);
+    }
+
+    /**
+     * Overrides hashCode() method so that equal states hash alike.
+     *
+     * @param  none
+     * @return int hash code
+     */
+
+    @Override
+    public int hashCode() {
+        long fingerprint = fingerprint();
+        return (int) (fingerprint ^ (fingerprint >>> Integer.SIZE));
+    }
+
     /** 
      * Overrides toString() method. Prints out the board from GameState as a
      * String and places the player's positon, goal position and obstacles on
@@ -337,7 +424,9 @@ public class GameState {
     
     @Override
     public String toString() {
-        String stringOfBoard = EMPTY_STRING;
+        // built in one StringBuilder rather than by repeated concatenation,
+        // which copies the whole board for every character added
+        StringBuilder stringOfBoard = new StringBuilder();
         // creates a deep copy of this board
         char[][] copyOfBoard = new char[this.board.length][];
         for(int i = 0; i < this.board.length; i++) {
@@ -349,26 +438,26 @@ public class GameState {
         // creates an upper border
         for(int i = 0; i < UPPER_BORDER_MULTIPLE * this.board[0].length 
                 + UPPER_BORDER_EXTRA; i++) {
-            stringOfBoard += UPPER_BORDER;
+            stringOfBoard.append(UPPER_BORDER);
         }
-        stringOfBoard += NEWLINE_CHAR;
+        stringOfBoard.append(NEWLINE_CHAR);
         // adds each input in the board to the String
         for(int i = 0; i < this.board.length; i++) {
-            stringOfBoard += SIDE_BORDER;
-            stringOfBoard += SPACE_CHAR;
+            stringOfBoard.append(SIDE_BORDER);
+            stringOfBoard.append(SPACE_CHAR);
             for(int j = 0; j < this.board[0].length; j++) {
-                stringOfBoard += copyOfBoard[i][j];
-                stringOfBoard += SPACE_CHAR;
+                stringOfBoard.append(copyOfBoard[i][j]);
+                stringOfBoard.append(SPACE_CHAR);
             }
-            stringOfBoard += SIDE_BORDER;        
-            stringOfBoard += NEWLINE_CHAR;
+            stringOfBoard.append(SIDE_BORDER);        
+            stringOfBoard.append(NEWLINE_CHAR);
         }
         // creates a lower border
         for(int i = 0; i < UPPER_BORDER_MULTIPLE * this.board[0].length 
                 + UPPER_BORDER_EXTRA; i++) {
-            stringOfBoard += UPPER_BORDER;
+            stringOfBoard.append(UPPER_BORDER);
         }
-        stringOfBoard += NEWLINE_CHAR;
-        return stringOfBoard;       
+        stringOfBoard.append(NEWLINE_CHAR);
+        return stringOfBoard.toString();       
     }
 }
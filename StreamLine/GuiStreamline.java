@@ -22,30 +22,45 @@ import javafx.scene.shape.*;
 import javafx.stage.Stage;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javafx.animation.*;
 import javafx.animation.PathTransition.*;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.event.EventHandler;
 import javafx.event.ActionEvent;
 import javafx.scene.Group;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.paint.*;
+import javafx.scene.transform.Affine;
 import javafx.util.Duration;
 
 /**
  * This class includes methods that help display the board on a group and 
  * methods to handle the movement of the player when a key is pressed. 
- * Important instance variables are the mainScene, the levelGroup that holds 
- * obstacles and trails, the rootGroup that holds everything else, the 
- * playerRect, which is the GUI representation of the player, the goalRect, 
- * which is the GUI representation of the goal, the grid that stores the Shape
- * objects, the Streamline game which is the current level of the game, the 
- * list of next games and the key handler for keyboard input.
+ * Important instance variables are the mainScene, the boardView that holds 
+ * the obstacles and trails around the window, the rootGroup that holds
+ * everything else, the playerRect, which is the GUI representation of the
+ * player, the goalRect, which is the GUI representation of the goal, the
+ * camera that keeps the player in view on boards larger than the window,
+ * the Streamline game which is the current level of the game, the list of
+ * files of the next levels, the next level being prepared in the background
+ * and the key handler for keyboard input.
  */
 
 public class GuiStreamline extends Application {
@@ -61,35 +76,95 @@ public class GuiStreamline extends Application {
         "> java GuiStreamline <directory>   - to start a game by reading a" +
         "ll game states from files in\n" +
         "                                     the specified directory and " +
-        "playing them in order\n";
+        "playing them in order\n" +
+        "> java GuiStreamline <directory> --watch\n" +
+        "                                   - to also pick up levels as they " +
+        "are edited\n";
+
+    // command line option for watching the level directory
+    static final String WATCH_OPTION = "--watch";
 
     static final Color TRAIL_COLOR = Color.BLUEVIOLET;
     static final Color GOAL_COLOR = Color.GREEN;
     static final Color OBSTACLE_COLOR = Color.DIMGRAY;
 
+    // goal color once the trail has cut the player off from the goal
+    static final Color DEAD_END_COLOR = Color.FIREBRICK;
+
     // Trail radius will be set to this fraction of the size of a board square.
     static final double TRAIL_RADIUS_FRACTION = 0.1;
 
     // Squares will be resized to this fraction of the size of a board square.
     static final double SQUARE_FRACTION = 0.8;
 
+    // Hint marker will be outlined with this fraction of a board square.
+    static final double HINT_STROKE_FRACTION = 0.05;
+
+    // Squares are never drawn smaller than this many pixels. A board that
+    // would need smaller ones is scrolled to follow the player instead.
+    static final double MIN_SQUARE_SIZE = 24;
+
+    // zoom of the board, changed by ZOOM_STEP per key press
+    static final double ZOOM_STEP = 1.25;
+    static final double MIN_ZOOM = 0.5;
+    static final double MAX_ZOOM = 4;
+
+    // seconds for the camera to cover most of the way to the player, and
+    // the distance in squares at which it stops
+    static final double CAMERA_TIME = 0.12;
+    static final double CAMERA_SNAP = 0.01;
+    static final double NANOS_PER_SECOND = 1e9;
+
     // fading effect
     private static final double FADE_FROM = 1;
     private static final double FADE_TO = 0.1;
 
     Scene mainScene;
-    Group levelGroup;                   // For obstacles and trails
+    BoardView boardView;                // For obstacles and trails
+    Group boardGroup;                   // Everything drawn on the board
     Group rootGroup;                    // Parent group for everything else
+    Affine boardTransform;              // Maps board squares to the scene
+    boolean relayoutPending;            // A relayout is already queued
     Player playerRect;                  // GUI representation of the player
+    SlideAnimator slideAnimator;        // Moves playerRect between squares
     RoundedSquare goalRect;             // GUI representation of the goal
+    RoundedSquare hintRect;             // Marks the square to move towards
+
+    // Board point shown at the center of the scene, in board units
+    double cameraX;
+    double cameraY;
+    long lastFrame;                     // Time the camera last moved
+    double zoom = 1;                    // Scale of the squares
 
-    Shape[][] grid;                     // Same dimensions as the game board
+    // Winning animation, created once and replayed for every level
+    Rectangle animatedGoal;
+    ScaleTransition goalScale;
+    FadeTransition goalFade;
 
     Streamline game;                    // The current level
-    ArrayList<Streamline> nextGames;    // Future levels
+    ArrayList<String> levelFiles;       // Every level file, in order
+    ArrayList<String> nextLevelFiles;   // Files of future levels
+    LevelSelect levelSelect;            // Grid of levelFiles to pick from
+    PreparedLevel levelModel;           // Render model of the current level
+
+    // Reads and prepares the next level while the current one is played
+    ExecutorService levelLoader;
+    CompletableFuture<PreparedLevel> nextLevel;
+    String nextLevelFile;               // File nextLevel is read from
+
+    // Queued levels already reread by levelWatcher, by file
+    HashMap<String, PreparedLevel> reloadedLevels =
+        new HashMap<String, PreparedLevel>();
+    LevelWatcher levelWatcher;          // Only with --watch
 
     MyKeyHandler myKeyHandler;          // for keyboard input
 
+    // Keys waiting to be handled, drained once per frame by inputPump
+    static final int INPUT_QUEUE_CAPACITY = 16;
+    ArrayDeque<KeyCode> inputQueue = new ArrayDeque<KeyCode>();
+    InputPump inputPump;
+    boolean levelTransitioning;         // Input is held while true
+
     /**
      * Returns the width of the board for the current level
      *
@@ -113,8 +188,9 @@ public class GuiStreamline extends Application {
     }
 
     /**
-     * Returns a size for a single square of the board that will fit nicely in 
-     * the current scene size
+     * Returns a size in pixels for a single square of the board that will fit
+     * nicely in the current scene size, but no smaller than MIN_SQUARE_SIZE,
+     * scaled by the zoom
      *
      * @param  none
      * @return size of a single square of the board
@@ -126,108 +202,168 @@ public class GuiStreamline extends Application {
         double squareWidth = mainScene.getWidth() / getBoardWidth();
         double squareHeight = mainScene.getHeight() / getBoardHeight();
 
-        // chooses the smallest value
-        if(squareWidth > squareHeight) {
-            return squareHeight;
-        }
-        return squareWidth;
+        // chooses the smallest value, unless the squares get too small
+        double squareSize = Math.min(squareWidth, squareHeight);
+        return Math.max(squareSize, MIN_SQUARE_SIZE) * zoom;
     }
 
     /**
-     * Destroys and recreates grid and all trail and obstacle shapes
+     * Scales boardGroup to the current scene size and zoom and places the
+     * camera. The board is drawn one unit per square, so this only updates
+     * boardTransform and the squares boardView shows.
      *
      * @param  none
      * @return void
      */
 
-    public void resetGrid() {
-        // clears the group
-        levelGroup.getChildren().clear();
-
-        // creates a new grid
-        this.grid = new Shape[getBoardHeight()][getBoardWidth()];
-
-        // loops through every element in the board
-        for(int i = 0; i < game.currentState.board.length; i++) {
-            for(int j = 0; j < game.currentState.board[0].length; j++) {
-
-                // if there is a trail char, add it to the grid and the group
-                if(game.currentState.board[i][j] == GameState.TRAIL_CHAR) {
-                    double[] trailPos = boardIdxToScenePos(j,i);
-                    Circle trailCircle = new Circle(trailPos[0],trailPos[1],
-                            getSquareSize() * TRAIL_RADIUS_FRACTION, 
-                            TRAIL_COLOR);
-                    grid[i][j] = trailCircle;
-                    levelGroup.getChildren().add(trailCircle);
-                }
+    public void relayout() {
+        relayoutPending = false;
+        double squareSize = getSquareSize();
+        boardTransform.setMxx(squareSize);
+        boardTransform.setMyy(squareSize);
+        applyCamera();
+        levelSelect.resize(mainScene.getWidth(), mainScene.getHeight());
+    }
 
-                // if there is an obstacle char, add it to the grid and the 
-                // group
-                if(game.currentState.board[i][j] == GameState.OBSTACLE_CHAR) {
-                    double[] obstaclePos = boardIdxToScenePos(j,i);
-                    RoundedSquare obstacleSquare = new RoundedSquare(
-                            obstaclePos[0], obstaclePos[1], getSquareSize()
-                            * SQUARE_FRACTION);
-                    grid[i][j] = obstacleSquare;
-                    obstacleSquare.setFill(OBSTACLE_COLOR);
-                    levelGroup.getChildren().add(obstacleSquare);
-                }
+    /**
+     * Centers the scene on the camera and has boardView show the squares in
+     * view. Along a side where the whole board fits, the board is centered
+     * instead, and elsewhere the camera stops at the edges of the board.
+     *
+     * @param  none
+     * @return void
+     */
 
-                // if there is an empty space, add it to the grid and the group
-                if(game.currentState.board[i][j] == GameState.SPACE_CHAR) {
-                    double[] emptyPos = boardIdxToScenePos(j,i);
-                    Circle emptyCircle = new Circle(emptyPos[0],emptyPos[1],
-                            getSquareSize() * TRAIL_RADIUS_FRACTION, 
-                            Color.TRANSPARENT);
-                    grid[i][j] = emptyCircle;
-                    levelGroup.getChildren().add(emptyCircle);
-                }
-            }
+    void applyCamera() {
+        double squareSize = boardTransform.getMxx();
+        double halfWidth = mainScene.getWidth() / squareSize / CENTER_DIVISOR;
+        double halfHeight = mainScene.getHeight() / squareSize / 
+            CENTER_DIVISOR;
+        double centerX = clampCamera(cameraX, halfWidth, getBoardWidth());
+        double centerY = clampCamera(cameraY, halfHeight, getBoardHeight());
+        boardTransform.setTx(mainScene.getWidth() / CENTER_DIVISOR - 
+                squareSize * centerX);
+        boardTransform.setTy(mainScene.getHeight() / CENTER_DIVISOR - 
+                squareSize * centerY);
+        boardView.setWindow(centerX - halfWidth, centerY - halfHeight,
+                centerX + halfWidth, centerY + halfHeight);
+    }
+
+    /**
+     * Returns where the camera can be along one side of the board
+     *
+     * @param camera    wanted position, in board units
+     * @param half      half of the scene, in board units
+     * @param boardSize length of the board along this side
+     * @return          the position to show
+     */
+
+    static double clampCamera(double camera, double half, int boardSize) {
+        if(half * CENTER_DIVISOR >= boardSize) {
+            return boardSize / CENTER_DIVISOR;
         }
-        updateTrailColors();
+        return Math.max(half, Math.min(boardSize - half, camera));
+    }
+
+    /**
+     * Moves the camera part of the way towards the player, which is where
+     * the slide animation has it now, so the view follows it smoothly. The
+     * camera covers the same share of the way every second whatever the
+     * frame rate.
+     *
+     * @param now time of the current frame in nanoseconds
+     * @return    void
+     */
+
+    void followPlayer(long now) {
+        double seconds = lastFrame == 0 ? 0 : 
+            (now - lastFrame) / NANOS_PER_SECOND;
+        lastFrame = now;
+        double targetX = playerRect.getCenterX();
+        double targetY = playerRect.getCenterY();
+        if(targetX == cameraX && targetY == cameraY) {
+            return;
+        }
+
+        double share = 1 - Math.exp(-seconds / CAMERA_TIME);
+        cameraX += (targetX - cameraX) * share;
+        cameraY += (targetY - cameraY) * share;
+        if(Math.abs(targetX - cameraX) < CAMERA_SNAP &&
+                Math.abs(targetY - cameraY) < CAMERA_SNAP) {
+            cameraX = targetX;
+            cameraY = targetY;
+        }
+        applyCamera();
+    }
+
+    /**
+     * Zooms the board in or out, keeping the camera where it is
+     *
+     * @param factor how much larger squares get
+     * @return       void
+     */
+
+    void zoomBy(double factor) {
+        zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        relayout();
+    }
+
+    /**
+     * Queues a relayout for the next pulse. Any further resize events that
+     * arrive before it runs share the same relayout.
+     *
+     * @param  none
+     * @return void
+     */
+
+    void requestRelayout() {
+        if(relayoutPending) {
+            return;
+        }
+        relayoutPending = true;
+        Platform.runLater(this::relayout);
+    }
+
+    /**
+     * Shows the current level in boardView. Its shapes are kept from earlier
+     * levels and only given to the squares in view by applyCamera(), so
+     * loading a level costs the same whatever the size of its board.
+     *
+     * @param  none
+     * @return void
+     */
+
+    public void resetGrid() {
+        boardView.show(game);
     }
 
     /** 
-     * Sets the fill color of all trail Circles making them visible or not
-     * depending on if that board position equals TRAIL_CHAR
+     * Sets the fill color of all trail Circles in view making them visible
+     * or not depending on if that board position equals TRAIL_CHAR
      *
      * @param  none
      * @return void
      */
 
     public void updateTrailColors() {
-        for(int i = 0; i < grid.length; i++) {
-            for(int j = 0; j < grid[0].length; j++) {
-                // checks if the object at grid[i][j] is a Circle
-                if(grid[i][j] instanceof Circle) {
-                    // if there is a trail char at the position of the object
-                    if(game.currentState.board[i][j] == GameState.TRAIL_CHAR) {
-                        grid[i][j].setFill(Color.BLUEVIOLET);
-                    }
-                    else {
-                        grid[i][j].setFill(Color.TRANSPARENT);
-                    }
-                }
-            }
-        }
+        boardView.refresh();
     }
 
     /** 
-     * Coverts the given board column and row into scene coordinates.
-     * Gives the center of the corresponding tile.
+     * Coverts the given board column and row into boardGroup coordinates,
+     * where every square is one unit wide; boardTransform takes them on to
+     * the scene. Gives the center of the corresponding tile.
      * 
-     * @param boardCol a board column to be converted to a scene x
-     * @param boardRow a board row to be converted to a scene y
-     * @return scene coordinates as length 2 array where index 0 is x
+     * @param boardCol a board column to be converted to an x
+     * @param boardRow a board row to be converted to a y
+     * @return coordinates as length 2 array where index 0 is x
      */
 
     static final double MIDDLE_OFFSET = 0.5;
+    static final double CENTER_DIVISOR = 2;
     public double[] boardIdxToScenePos (int boardCol, int boardRow) {
-        double sceneX = ((boardCol + MIDDLE_OFFSET) * 
-                (mainScene.getWidth() - 1)) / getBoardWidth();
-        double sceneY = ((boardRow + MIDDLE_OFFSET) * 
-                (mainScene.getHeight() - 1)) / getBoardHeight();
-        return new double[]{sceneX, sceneY};
+        return new double[]{boardCol + MIDDLE_OFFSET, 
+            boardRow + MIDDLE_OFFSET};
     }
 
     /** 
@@ -249,26 +385,20 @@ public class GuiStreamline extends Application {
             return;
         }
 
-        double squareSize = getSquareSize() * SQUARE_FRACTION;
+        // any hint shown was for the old position
+        hintRect.setVisible(false);
 
-        // Update the player position
-        double[] playerPos = boardIdxToScenePos(toCol, toRow);
-
-        playerRect.setSize(squareSize);
-        playerRect.setCenterX(playerPos[0]);
-        playerRect.setCenterY(playerPos[1]);
+        // slides the player over, revealing or clearing the trail behind it
+        playerRect.setSize(SQUARE_FRACTION);
+        slideAnimator.slide(boardView, fromCol, fromRow, toCol, toRow);
 
-        // updateTrailColors();
+        // a goal the player can no longer reach turns red until undone
+        goalRect.setFill(game.isDeadEnd() ? DEAD_END_COLOR : GOAL_COLOR);
 
-        // player animations: for the trails to follow the player
-        Path path = new Path();
-        path.getElements().add(new MoveTo(fromRow, fromCol));
-
-        PathTransition transition = new PathTransition(
-                Duration.millis(FADE_TIME), path, playerRect);
-        transition.play();
-
-        updateTrailColors();
+        // starts preparing the next level once this one is nearly done
+        if(game.currentState.levelPassed || game.getHintDistance() == 1) {
+            prepareNextLevel();
+        }
 
         // call onlevelFinished if level is passed
         if(game.currentState.levelPassed == true) {
@@ -276,6 +406,60 @@ public class GuiStreamline extends Application {
         }                     
     }   
 
+    /**
+     * Shows the level as it started after a restart. The shapes of the board
+     * are kept, so only the trail in view is cleared and the player put
+     * back, and the camera follows it there.
+     *
+     * @param fromCol player column before the restart
+     * @param fromRow player row before the restart
+     * @return        void
+     */
+
+    void onLevelRestarted(int fromCol, int fromRow) {
+        if (fromCol == game.currentState.playerCol &&
+                fromRow == game.currentState.playerRow) {
+            return;
+        }
+        slideAnimator.fastForward();
+        hintRect.setVisible(false);
+        updateTrailColors();
+
+        double[] playerPos = boardIdxToScenePos(
+                game.currentState.playerCol, game.currentState.playerRow);
+        playerRect.setSize(SQUARE_FRACTION);
+        playerRect.setCenterX(playerPos[0]);
+        playerRect.setCenterY(playerPos[1]);
+        goalRect.setFill(GOAL_COLOR);
+    }
+
+    /**
+     * Outlines the square next to the player in the direction of the first
+     * move of a shortest path to the goal. The distance field was built when
+     * the level was loaded, so this is only a lookup.
+     *
+     * @param  none
+     * @return void
+     */
+
+    public void showHint() {
+        Direction hint = game.getHint();
+        if(hint == null) {
+            System.out.println(Streamline.NO_HINT);
+            hintRect.setVisible(false);
+            return;
+        }
+
+        double[] hintPos = boardIdxToScenePos(
+                game.currentState.playerCol + hint.getColStep(),
+                game.currentState.playerRow + hint.getRowStep());
+        hintRect.setSize(SQUARE_FRACTION);
+        hintRect.setStrokeWidth(HINT_STROKE_FRACTION);
+        hintRect.setCenterX(hintPos[0]);
+        hintRect.setCenterY(hintPos[1]);
+        hintRect.setVisible(true);
+    }
+
     /**
      * Called when a key is pressed
      *
@@ -324,6 +508,29 @@ public class GuiStreamline extends Application {
                         game.currentState.playerCol,
                         game.currentState.playerRow, false); 
                 break;
+                // if the r key is pressed
+            case R:
+                game.restart();
+                onLevelRestarted(fromCol, fromRow);
+                break;
+                // if the + or - key is pressed
+            case EQUALS:
+            case PLUS:
+            case ADD:
+                zoomBy(ZOOM_STEP);
+                break;
+            case MINUS:
+            case SUBTRACT:
+                zoomBy(1 / ZOOM_STEP);
+                break;
+                // if the h key is pressed
+            case H:
+                showHint();
+                break;
+                // if the l key is pressed
+            case L:
+                openLevelSelect();
+                break;
                 // if the o key is pressed
             case O:
                 game.saveToFile();
@@ -336,24 +543,212 @@ public class GuiStreamline extends Application {
             default:
                 System.out.println("Possible commands:\n w - up\n " + 
                         "a - left\n s - down\n d - right\n u - undo\n " + 
-                        "q - quit level");
+                        "r - restart\n + - zoom in\n - - zoom out\n " +
+                        "h - hint\n l - select level\n q - quit level");
                 break;
         }
     }
 
     /**
-     * This nested class handles keyboard input and calls handleKeyCode() which
-     * will perform the action based on the key that is pressed.
+     * Adds a key to inputQueue. Keys are dropped while the queue is full, and
+     * a move key is dropped if the same key is already waiting at the end of
+     * the queue, since the second slide could not go anywhere.
+     *
+     * @param keyCode the key that is pressed
+     * @return        void
+     */
+
+    void queueKeyCode(KeyCode keyCode) {
+        if(inputQueue.size() >= INPUT_QUEUE_CAPACITY) {
+            return;
+        }
+        if(keyCode.isArrowKey() && keyCode == inputQueue.peekLast()) {
+            return;
+        }
+        inputQueue.addLast(keyCode);
+    }
+
+    /**
+     * Handles queued keys until one of them changes the game, so that at
+     * most one move is started per frame. Keys that change nothing, such as
+     * a slide into a wall, are used up without costing the frame. Nothing is
+     * handled while the level is changing.
+     *
+     * @param  none
+     * @return void
+     */
+
+    void drainInput() {
+        while(!levelTransitioning && !inputQueue.isEmpty()) {
+            GameState before = game.currentState;
+            int history = game.previousStates.size();
+
+            handleKeyCode(inputQueue.pollFirst());
+
+            // a move adds to the history, an undo swaps the state
+            if(game.currentState != before || 
+                    game.previousStates.size() != history) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * This nested class handles keyboard input and queues it for inputPump,
+     * which will call handleKeyCode() to perform the action based on the key
+     * that is pressed.
      */
 
     class MyKeyHandler implements EventHandler<KeyEvent> {
         @Override
         public void handle(KeyEvent e) {
             KeyCode keyCode = e.getCode();
-            handleKeyCode(keyCode);
+            // the level select takes keys straight away, not once per frame
+            if(levelSelect.isShowing()) {
+                if(keyCode == KeyCode.ESCAPE || keyCode == KeyCode.L) {
+                    levelSelect.hide();
+                }
+                else {
+                    levelSelect.handleKey(keyCode);
+                }
+                return;
+            }
+            queueKeyCode(keyCode);
         }
     }        
 
+    /**
+     * Shows the level select with the current level selected. There is
+     * nothing to select unless the levels came from a directory.
+     *
+     * @param  none
+     * @return void
+     */
+
+    void openLevelSelect() {
+        if(levelFiles.isEmpty() || levelTransitioning) {
+            return;
+        }
+        int current = levelModel == null || levelModel.filename == null ? 0
+            : Collections.binarySearch(levelFiles, levelModel.filename);
+        inputQueue.clear();
+        levelSelect.show(Math.max(current, 0), mainScene.getWidth(),
+                mainScene.getHeight());
+    }
+
+    /**
+     * Called by levelSelect when a level is picked. Switches to that level
+     * and queues the levels after it in directory order. A level that can
+     * not be read leaves the level select open.
+     *
+     * @param index index of the level in levelFiles
+     * @return      void
+     */
+
+    void selectLevel(int index) {
+        if(levelTransitioning) {
+            return;
+        }
+        PreparedLevel model = reloadedLevels.remove(levelFiles.get(index));
+        if(model == null) {
+            model = PreparedLevel.load(levelFiles.get(index));
+        }
+        if(model == null) {
+            return;
+        }
+        levelSelect.hide();
+        inputQueue.clear();
+        game = model.game;
+        levelModel = model;
+        nextLevelFiles = new ArrayList<String>(
+                levelFiles.subList(index + 1, levelFiles.size()));
+        nextLevel = null;
+        nextLevelFile = null;
+        onLevelLoaded();
+    }
+
+    /**
+     * This nested class drains the queued keyboard input once per frame
+     */
+
+    class InputPump extends AnimationTimer {
+        @Override
+        public void handle(long now) {
+            drainInput();
+            followPlayer(now);
+        }
+    }
+
+    /**
+     * This nested class holds a level that is ready to be shown: the parsed
+     * and validated game with its hint field and dead end regions already
+     * built. Building one touches no JavaFX node, so it can be done on
+     * levelLoader while the player is still finishing the previous level.
+     * Shapes are placed in board units, so nothing about the model depends
+     * on the scene size.
+     */
+
+    static class PreparedLevel {
+        final Streamline game;
+        final String filename;          // null if not read from a file
+
+        /**
+         * Prepares the given game
+         *
+         * @param game the level
+         */
+
+        PreparedLevel(Streamline game) {
+            this(game, null);
+        }
+
+        /**
+         * Prepares the given game, read from the given file
+         *
+         * @param game     the level
+         * @param filename name of the level file
+         */
+
+        PreparedLevel(Streamline game, String filename) {
+            this.game = game;
+            this.filename = filename;
+
+            // builds the hint field now rather than on the FX thread
+            game.getHintField();
+
+            // labels the regions before the first move, so that every move,
+            // undo and restart updates them instead of labeling them again
+            game.isDeadEnd();
+        }
+
+        /**
+         * Reads, validates and prepares the level stored in the given file
+         *
+         * @param filename name of the level file
+         * @return         the prepared level, or null if the file does not
+         *                 hold a valid level
+         */
+
+        static PreparedLevel load(String filename) {
+            try {
+                GameState state = Streamline.readState(filename);
+                int height = state.board.length;
+                int width = state.board[0].length;
+                if(state.playerRow < 0 || state.playerRow >= height ||
+                        state.playerCol < 0 || state.playerCol >= width ||
+                        state.goalRow < 0 || state.goalRow >= height ||
+                        state.goalCol < 0 || state.goalCol >= width) {
+                    throw new IllegalArgumentException(
+                            "player or goal is off the board");
+                }
+                return new PreparedLevel(new Streamline(state), filename);
+            } catch (Exception e) {
+                System.out.printf("Skipping level %s: %s\n", filename, e);
+                return null;
+            }
+        }
+    }
+
     /**
      * Called when the UI needs to be completely redone to reflect a new level
      *
@@ -362,9 +757,24 @@ public class GuiStreamline extends Application {
      */
 
     public void onLevelLoaded() {
+        // uses the level prepared in the background if there is one
+        if(levelModel == null || levelModel.game != game) {
+            levelModel = new PreparedLevel(game);
+        }
+
+        // a slide still running belongs to the old board
+        slideAnimator.fastForward();
         resetGrid();
 
-        double squareSize = getSquareSize() * SQUARE_FRACTION;
+        // the camera starts on the player instead of sliding over to it
+        double[] cameraPos = boardIdxToScenePos(
+                game.currentState.playerCol, game.currentState.playerRow);
+        cameraX = cameraPos[0];
+        cameraY = cameraPos[1];
+        relayout();
+        hintRect.setVisible(false);
+
+        double squareSize = SQUARE_FRACTION;
 
         // Update the player position
         double[] playerPos = boardIdxToScenePos(
@@ -397,81 +807,223 @@ public class GuiStreamline extends Application {
     static final double FADE_TIME = 250;   // milliseconds for fade animation
     static final double DOUBLE_MULTIPLIER = 2;
     public void onLevelFinished() {
-        // Clone the goal rectangle and scale it up until it covers the screen
+        // keys meant for this level are dropped, later ones wait
+        levelTransitioning = true;
+        inputQueue.clear();
 
-        // Clone the goal rectangle
-        Rectangle animatedGoal = new Rectangle(
-                goalRect.getX(),
-                goalRect.getY(),
-                goalRect.getWidth(),
-                goalRect.getHeight()
-                );
+        // in case the level was finished without a nearly done move
+        prepareNextLevel();
+
+        // Clone the goal rectangle and scale it up until it covers the screen
+        animatedGoal.setX(goalRect.getX());
+        animatedGoal.setY(goalRect.getY());
+        animatedGoal.setWidth(goalRect.getWidth());
+        animatedGoal.setHeight(goalRect.getHeight());
         animatedGoal.setFill(goalRect.getFill());
 
-        // Add the clone to the scene
-        List<Node> children = rootGroup.getChildren();
+        // undoes the previous level's animation
+        animatedGoal.setScaleX(1);
+        animatedGoal.setScaleY(1);
+        animatedGoal.setOpacity(FADE_FROM);
+
+        // Add the clone to the board, just below the goal
+        List<Node> children = boardGroup.getChildren();
         children.add(children.indexOf(goalRect), animatedGoal);
 
+        // Scale enough to eventually cover the entire scene, which is
+        // getSquareSize() pixels per unit of the board
+        goalScale.setByX(DOUBLE_MULTIPLIER * mainScene.getWidth() / 
+                getSquareSize() / animatedGoal.getWidth());
+        goalScale.setByY(DOUBLE_MULTIPLIER * mainScene.getHeight() / 
+                getSquareSize() / animatedGoal.getHeight());
+
+        // Start the scale animation
+        goalScale.playFromStart();
+    }
+
+    /**
+     * Creates the winning animation played by onLevelFinished(). The same
+     * Rectangle and transitions are reused for every level.
+     *
+     * @param  none
+     * @return void
+     */
+
+    void createLevelFinishedAnimation() {
+        animatedGoal = new Rectangle();
+
         // Create the scale animation
-        ScaleTransition st = new ScaleTransition(
+        goalScale = new ScaleTransition(
                 Duration.millis(SCALE_TIME), animatedGoal
                 );
-        st.setInterpolator(Interpolator.EASE_IN);
+        goalScale.setInterpolator(Interpolator.EASE_IN);
 
-        // Scale enough to eventually cover the entire scene
-        st.setByX(DOUBLE_MULTIPLIER * 
-                mainScene.getWidth() / animatedGoal.getWidth());
-        st.setByY(DOUBLE_MULTIPLIER * 
-                mainScene.getHeight() / animatedGoal.getHeight());
+        // creates fade
+        goalFade = new FadeTransition(Duration.millis(FADE_TIME), 
+                animatedGoal);
+        goalFade.setFromValue(FADE_FROM);
+        goalFade.setToValue(FADE_TO);
 
         /*
          * This will be called after the scale animation finishes.
          * If there is no next level, quit. Otherwise switch to it and
          * fade out the animated cloned goal to reveal the new level.
          */
-        st.setOnFinished(e1 -> {
+        goalScale.setOnFinished(e1 -> {
                 
                 // checks if there are any more levels
-                if(nextGames.size() == 0) {
+                PreparedLevel next = takeNextLevel();
+                if(next == null) {
                 System.exit(0);
                 }
 
                 // updates the game to the next level
-                else {
-                game = nextGames.get(0);
-                nextGames.remove(0);
-                }
+                game = next.game;
+                levelModel = next;
 
                 // Update UI to the next level, but it won't be visible yet
                 // because it's covered by the animated cloned goal
 
                 onLevelLoaded();
 
-                // creates fade
-                FadeTransition fade = new FadeTransition(
-                    Duration.millis(FADE_TIME),animatedGoal);
-                fade.setFromValue(FADE_FROM);
-                fade.setToValue(FADE_TO);
-                fade.play();
-
-                // removes fade from group after it is finished
-                fade.setOnFinished(e2 -> {
-                        rootGroup.getChildren().remove(animatedGoal);
-                        });
+                goalFade.playFromStart();
         });
 
-        // Start the scale animation
-        st.play();
+        // removes fade from group after it is finished
+        goalFade.setOnFinished(e2 -> {
+                boardGroup.getChildren().remove(animatedGoal);
+                levelTransitioning = false;
+                });
+    }
+
+    /**
+     * Starts reading and preparing the next level on levelLoader, unless it
+     * has already been started or there are no more levels.
+     *
+     * @param  none
+     * @return void
+     */
+
+    void prepareNextLevel() {
+        if(nextLevel != null || nextLevelFiles.isEmpty()) {
+            return;
+        }
+        String filename = nextLevelFiles.remove(0);
+        nextLevelFile = filename;
+
+        // a level the watcher already reread need not be read again
+        PreparedLevel reloaded = reloadedLevels.remove(filename);
+        if(reloaded != null) {
+            nextLevel = CompletableFuture.completedFuture(reloaded);
+            return;
+        }
+        nextLevel = CompletableFuture.supplyAsync(
+                () -> PreparedLevel.load(filename), levelLoader);
+    }
+
+    /**
+     * Returns the next valid level, waiting for the background preparation
+     * only if it has not finished yet. Invalid levels are skipped.
+     *
+     * @param  none
+     * @return the next level, or null if there are no more levels
+     */
+
+    PreparedLevel takeNextLevel() {
+        PreparedLevel next = null;
+        while(next == null) {
+            prepareNextLevel();
+            if(nextLevel == null) {
+                return null;
+            }
+            next = nextLevel.join();
+            nextLevel = null;
+            nextLevelFile = null;
+        }
+        return next;
+    }
+
+    /**
+     * Called by levelWatcher, on its own thread, with the level files that
+     * were created, modified or deleted. Rereads only those files, then
+     * hands the results to the FX thread.
+     *
+     * @param changed the files that changed
+     * @return        void
+     */
+
+    void onLevelFilesChanged(Set<Path> changed) {
+        HashMap<String, PreparedLevel> reread =
+            new HashMap<String, PreparedLevel>();
+        for(Path file : changed) {
+            // a deleted or invalid file maps to null
+            reread.put(file.toString(), Files.isRegularFile(file) ?
+                    PreparedLevel.load(file.toString()) : null);
+        }
+        Platform.runLater(() -> applyLevelChanges(reread));
+    }
+
+    /**
+     * Brings the levels up to date with files reread by the watcher. The
+     * level being played is reloaded in place. Any other valid file goes
+     * into the queue of future levels at its place in directory order,
+     * so an edited level comes up again soon, and deleted or invalid files
+     * leave the queue.
+     *
+     * @param reread the reread levels by file, null where there is none
+     * @return       void
+     */
+
+    void applyLevelChanges(Map<String, PreparedLevel> reread) {
+        for(Map.Entry<String, PreparedLevel> entry : reread.entrySet()) {
+            String filename = entry.getKey();
+            PreparedLevel model = entry.getValue();
+
+            if(levelModel != null && filename.equals(levelModel.filename)) {
+                // restarts the current level unless it is already won
+                if(model != null && !levelTransitioning) {
+                    System.out.printf("Reloading level %s...\n", filename);
+                    inputQueue.clear();
+                    game = model.game;
+                    levelModel = model;
+                    onLevelLoaded();
+                }
+                continue;
+            }
+
+            // a level being prepared from the old file is out of date
+            if(filename.equals(nextLevelFile)) {
+                nextLevel = null;
+                nextLevelFile = null;
+            }
+            nextLevelFiles.remove(filename);
+            reloadedLevels.remove(filename);
+            int position = Collections.binarySearch(levelFiles, filename);
+            if(position >= 0) {
+                levelFiles.remove(position);
+            }
+            if(model != null) {
+                int index = Collections.binarySearch(nextLevelFiles,
+                        filename);
+                nextLevelFiles.add(-index - 1, filename);
+                reloadedLevels.put(filename, model);
+                levelFiles.add(-Collections.binarySearch(levelFiles,
+                            filename) - 1, filename);
+            }
+        }
+        levelSelect.refresh();
     }
 
     /** 
-     * Performs file IO to populate game and nextGames using filenames from
-     * command line arguments.
+     * Performs file IO to populate game and nextLevelFiles using filenames
+     * from command line arguments. Only the first level of a directory is
+     * read here; the rest are read in the background as they come up.
      */
 
     public void loadLevels() {
         game = null;
-        nextGames = new ArrayList<Streamline>();
+        levelFiles = new ArrayList<String>();
+        nextLevelFiles = new ArrayList<String>();
 
         List<String> args = getParameters().getRaw();
         if (args.size() == 0) {
@@ -480,7 +1032,7 @@ public class GuiStreamline extends Application {
             return;
         }
 
-        // at this point args.length == 1
+        // at this point args.length is 1, or 2 with WATCH_OPTION
 
         File file = new File(args.get(0));
         if (!file.exists()) {
@@ -497,7 +1049,7 @@ public class GuiStreamline extends Application {
             return;
         }
 
-        // file is a directory, walk the directory and load from all files
+        // file is a directory, walk the directory and queue all files
         File[] subfiles = file.listFiles();
         Arrays.sort(subfiles);
         for (int i=0; i<subfiles.length; i++) {
@@ -506,16 +1058,31 @@ public class GuiStreamline extends Application {
             // in case there's a directory in there, skip
             if (subfile.isDirectory()) continue;
 
-            // assume all files are properly formatted games, 
-            // create a new game for each file, and add it to nextGames
-            System.out.printf("Loading game %d/%d from file %s...\n",
-                    i+1, subfiles.length, subfile.toString());
-            nextGames.add(new Streamline(subfile.toString()));
+            levelFiles.add(subfile.toString());
+        }
+        nextLevelFiles.addAll(levelFiles);
+        System.out.printf("Found %d levels in directory %s...\n",
+                nextLevelFiles.size(), args.get(0));
+
+        // Switch to the first valid level
+        while (game == null && !nextLevelFiles.isEmpty()) {
+            levelModel = PreparedLevel.load(nextLevelFiles.remove(0));
+            if (levelModel != null) {
+                game = levelModel.game;
+            }
         }
 
-        // Switch to the first level
-        game = nextGames.get(0);
-        nextGames.remove(0);
+        if (args.size() > 1 && args.get(1).equals(WATCH_OPTION)) {
+            try {
+                levelWatcher = LevelWatcher.start(file.toPath(),
+                        this::onLevelFilesChanged);
+                System.out.printf("Watching directory %s for changes...\n",
+                        args.get(0));
+            } catch (IOException e) {
+                System.out.printf("Cannot watch directory %s: %s\n",
+                        args.get(0), e);
+            }
+        }
     }
 
     /**
@@ -524,29 +1091,70 @@ public class GuiStreamline extends Application {
      */
     @Override
         public void start(Stage primaryStage) throws Exception {
-            // Populate game and nextGames
+            // Reads levels in the background without keeping the JVM alive
+            levelLoader = Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "level-loader");
+                    thread.setDaemon(true);
+                    return thread;
+                    });
+
+            // Populate game and nextLevelFiles
             loadLevels();
 
             // Initialize the scene and our groups
             rootGroup = new Group();
             mainScene = new Scene(rootGroup, SCENE_WIDTH, SCENE_HEIGHT, 
                     Color.GAINSBORO);
-            levelGroup = new Group();
-            rootGroup.getChildren().add(levelGroup);     
-
-            // initializes goalRect and adds it to rootGroup
+            boardGroup = new Group();
+            boardTransform = new Affine();
+            boardGroup.getTransforms().add(boardTransform);
+            rootGroup.getChildren().add(boardGroup);
+            boardView = new BoardView();
+            boardGroup.getChildren().add(boardView);
+
+            // initializes goalRect and adds it to boardGroup
             this.goalRect = new RoundedSquare();
-            rootGroup.getChildren().add(this.goalRect);
+            boardGroup.getChildren().add(this.goalRect);
 
-            // initializes playerRect and adds it to rootGroup
+            // initializes hintRect and adds it to boardGroup
+            this.hintRect = new RoundedSquare();
+            hintRect.setFill(Color.TRANSPARENT);
+            hintRect.setStroke(GOAL_COLOR);
+            hintRect.setVisible(false);
+            boardGroup.getChildren().add(this.hintRect);
+
+            // initializes playerRect and adds it to boardGroup
             this.playerRect = new Player();
-            rootGroup.getChildren().add(this.playerRect);
+            boardGroup.getChildren().add(this.playerRect);
+            this.slideAnimator = new SlideAnimator(this.playerRect);
+
+            // the level select covers everything else while it is shown
+            levelSelect = new LevelSelect(levelFiles, this::selectLevel);
+            rootGroup.getChildren().add(levelSelect);
+            mainScene.setOnScroll(e -> {
+                    if(levelSelect.isShowing()) {
+                        levelSelect.scrollBy(-e.getDeltaY());
+                    }
+                    else if(e.isControlDown() && e.getDeltaY() != 0) {
+                        zoomBy(e.getDeltaY() > 0 ? ZOOM_STEP : 
+                            1 / ZOOM_STEP);
+                    }
+                    });
 
+            createLevelFinishedAnimation();
             onLevelLoaded();
 
+            // refits the board whenever the window is resized
+            mainScene.widthProperty().addListener(
+                    (observable, oldWidth, newWidth) -> requestRelayout());
+            mainScene.heightProperty().addListener(
+                    (observable, oldHeight, newHeight) -> requestRelayout());
+
             // keyboard input handling
             myKeyHandler = new MyKeyHandler();
             mainScene.setOnKeyPressed(myKeyHandler);
+            inputPump = new InputPump();
+            inputPump.start();
 
             // Make the scene visible
             primaryStage.setTitle(TITLE);
@@ -561,7 +1169,8 @@ public class GuiStreamline extends Application {
      * start() above being called.
      */
     public static void main(String[] args) {
-        if (args.length != 0 && args.length != 1) {
+        if (args.length > 2 ||
+                (args.length == 2 && !args[1].equals(WATCH_OPTION))) {
             System.out.print(USAGE);
             return;
         }
@@ -0,0 +1,352 @@
+/**
+ * File: IdaSolver.java
+ *
+ * Included below is a solver for levels whose state space is too large to
+ * keep in memory. It finds a shortest solution with iterative deepening A*,
+ * using memory that grows only with the length of the solution.
+ */
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The IdaSolver class runs depth-first searches from the start of a level,
+ * each cut off where the moves made plus a lower bound on the moves left
+ * exceed a bound, and raises the bound to the smallest value that was cut
+ * off until the goal is reached. Moves are made and taken back on a single
+ * GameState with slide() and unslide(), and the search keeps nothing but the
+ * moves of the current path, so memory is O(depth).
+ *
+ * The lower bound must never overestimate, or the solution found might not
+ * be a shortest one. The DistanceField used for hints can not be used: it
+ * only lets the player stop at obstacles and edges, but trail stops the
+ * player as well, so a level can take fewer moves than the field says, or
+ * be solvable where the field says the goal is unreachable. Instead the
+ * bound counts moves of a rook that may stop on any square before an
+ * obstacle. Every real slide is such a move, so a level can never be solved
+ * in fewer moves than the rook needs.
+ *
+ * The search can be given a node budget and a time budget. When either runs
+ * out, the result holds the path that got closest to the goal so far.
+ */
+
+public class IdaSolver {
+    static final String USAGE =
+        "Usage: \n" +
+        "> java IdaSolver <filename>                    - to find a shortest" +
+        " solution\n" +
+        "> java IdaSolver <filename> <nodes> <seconds>  - to give up after " +
+        "visiting nodes\n" +
+        "                                                 states or after th" +
+        "e given time\n";
+
+    // lower bound of squares from which the rook can not reach the goal
+    static final int UNREACHABLE = Integer.MAX_VALUE / 2;
+
+    // no budget
+    static final long UNLIMITED = Long.MAX_VALUE;
+
+    // all directions in ordinal order
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    // returned by a bounded search that reached the goal or a budget
+    private static final int FOUND = -1;
+    private static final int OUT_OF_BUDGET = -2;
+
+    // nodes visited between looks at the clock
+    private static final int CLOCK_INTERVAL = 4096;
+
+    // initial length of the path arrays
+    private static final int INITIAL_DEPTH = 64;
+
+    // nanoseconds in a millisecond
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    // report statements
+    private static final String SOLVED = "solved in %d moves: %s";
+    private static final String UNSOLVABLE = "no solution";
+    private static final String GAVE_UP =
+        "gave up, no solution in fewer than %d moves; closest path %s " +
+        "ends %d rook moves from the goal";
+    private static final String STATISTICS = "%d nodes in %d ms";
+
+    /**
+     * The Result class holds the outcome of a search
+     */
+
+    static class Result {
+        // true if a solution was found, which is then a shortest one
+        boolean solved;
+
+        // true if a budget ran out before the search finished
+        boolean exhausted;
+
+        // the solution, or the path closest to the goal if not solved
+        Direction[] moves;
+
+        // lower bound of the moves left at the end of moves
+        int movesLeft;
+
+        // no solution is shorter than this
+        int lowerBound;
+
+        long nodes;
+        long nanos;
+
+        @Override
+        public String toString() {
+            String moveList = Arrays.toString(moves).toLowerCase();
+            String outcome;
+            if(solved) {
+                outcome = String.format(SOLVED, moves.length, moveList);
+            }
+            else if(exhausted) {
+                outcome = String.format(GAVE_UP, lowerBound, moveList,
+                        movesLeft);
+            }
+            else {
+                outcome = UNSOLVABLE;
+            }
+            return outcome + "\n" + String.format(STATISTICS, nodes,
+                    nanos / NANOS_PER_MILLI);
+        }
+    }
+
+    private final GameState state;
+    private final int width;
+    private final int[] lowerBounds;
+    private final long nodeBudget;
+    private final long deadline;
+
+    // the current path
+    private Direction[] moves = new Direction[INITIAL_DEPTH];
+    private int[] steps = new int[INITIAL_DEPTH];
+    private char[] startChars = new char[INITIAL_DEPTH];
+    private int[] tried = new int[INITIAL_DEPTH];
+
+    // the path that got closest to the goal
+    private Direction[] bestMoves = new Direction[0];
+    private int bestMovesLeft;
+
+    private long nodes;
+    private int solutionLength;
+
+    /**
+     * Prepares a search of the given level
+     *
+     * @param GameState start start of the level, copied
+     * @param long nodeBudget nodes to visit before giving up
+     * @param long deadline System.nanoTime() to give up at
+     */
+
+    private IdaSolver(GameState start, long nodeBudget, long deadline) {
+        this.state = new GameState(start);
+        this.width = start.board[0].length;
+        this.lowerBounds = rookDistances(start);
+        this.nodeBudget = nodeBudget;
+        this.deadline = deadline;
+        this.bestMovesLeft = lowerBound();
+    }
+
+    /**
+     * Returns, for every square, the fewest moves of a rook from there to
+     * the goal, where the rook moves along a row or column any number of
+     * squares without passing an obstacle. Trail is treated as empty.
+     *
+     * @param GameState start level to measure
+     * @return int[] moves by row * width + col, or UNREACHABLE
+     */
+
+    static int[] rookDistances(GameState start) {
+        int height = start.board.length;
+        int width = start.board[0].length;
+        int[] distance = new int[height * width];
+        Arrays.fill(distance, UNREACHABLE);
+
+        int[] queue = new int[height * width];
+        int head = 0;
+        int tail = 0;
+        distance[start.goalRow * width + start.goalCol] = 0;
+        queue[tail++] = start.goalRow * width + start.goalCol;
+        while(head < tail) {
+            int square = queue[head++];
+            int next = distance[square] + 1;
+            for(Direction direction : DIRECTIONS) {
+                int row = square / width + direction.getRowStep();
+                int col = square % width + direction.getColStep();
+                while(row >= 0 && row < height && col >= 0 && col < width &&
+                        !blocks(start.board[row][col])) {
+                    int reached = row * width + col;
+                    // squares further on are reached as fast from there
+                    if(distance[reached] < next) {
+                        break;
+                    }
+                    if(distance[reached] == UNREACHABLE) {
+                        distance[reached] = next;
+                        queue[tail++] = reached;
+                    }
+                    row += direction.getRowStep();
+                    col += direction.getColStep();
+                }
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * Returns true if the given square stops the player for the whole level
+     *
+     * @param char square character on the square
+     * @return boolean true for obstacles
+     */
+
+    private static boolean blocks(char square) {
+        return square != GameState.SPACE_CHAR &&
+            square != GameState.TRAIL_CHAR;
+    }
+
+    /**
+     * Returns the lower bound of the moves left from the current state
+     *
+     * @return int moves left, or UNREACHABLE
+     */
+
+    private int lowerBound() {
+        return lowerBounds[state.playerRow * width + state.playerCol];
+    }
+
+    /**
+     * Finds a shortest solution of a level
+     *
+     * @param GameState start start of the level, which is left unchanged
+     * @param long nodeBudget nodes to visit before giving up, or UNLIMITED
+     * @param long millis milliseconds to search before giving up, or
+     *                    UNLIMITED
+     * @return Result the solution, or the closest path found
+     */
+
+    static Result solve(GameState start, long nodeBudget, long millis) {
+        long startTime = System.nanoTime();
+        long deadline = millis >= UNLIMITED / NANOS_PER_MILLI ? UNLIMITED
+            : startTime + millis * NANOS_PER_MILLI;
+        IdaSolver solver = new IdaSolver(start, nodeBudget, deadline);
+
+        Result result = new Result();
+        int bound = solver.lowerBound();
+        int outcome = bound;
+        if(solver.state.levelPassed) {
+            outcome = FOUND;
+        }
+        while(outcome >= 0 && outcome < UNREACHABLE) {
+            bound = outcome;
+            result.lowerBound = bound;
+            outcome = solver.search(bound);
+        }
+
+        result.solved = outcome == FOUND;
+        result.exhausted = outcome == OUT_OF_BUDGET;
+        if(result.solved) {
+            result.moves = Arrays.copyOf(solver.moves,
+                    solver.solutionLength);
+            result.lowerBound = solver.solutionLength;
+        }
+        else {
+            result.moves = solver.bestMoves;
+            result.movesLeft = solver.bestMovesLeft;
+        }
+        result.nodes = solver.nodes;
+        result.nanos = System.nanoTime() - startTime;
+        return result;
+    }
+
+    /**
+     * Searches every path whose moves plus lower bound stay within the given
+     * bound, leaving the state as it found it unless the goal or a budget is
+     * reached.
+     *
+     * @param int bound largest estimated solution length to search
+     * @return int FOUND, OUT_OF_BUDGET, or the smallest estimate above the
+     *         bound, UNREACHABLE if there was none
+     */
+
+    private int search(int bound) {
+        int nextBound = UNREACHABLE;
+        int depth = 0;
+        tried[0] = 0;
+        nodes++;
+        while(depth >= 0) {
+            // every move from this state was tried, back to its parent
+            if(tried[depth] == DIRECTIONS.length) {
+                depth--;
+                if(depth >= 0) {
+                    state.unslide(moves[depth], steps[depth],
+                            startChars[depth], false);
+                }
+                continue;
+            }
+
+            Direction direction = DIRECTIONS[tried[depth]++];
+            char startChar = state.board[state.playerRow][state.playerCol];
+            int moved = state.slide(direction);
+            if(moved == 0) {
+                continue;
+            }
+            moves[depth] = direction;
+            steps[depth] = moved;
+            startChars[depth] = startChar;
+
+            nodes++;
+            if(state.levelPassed) {
+                solutionLength = depth + 1;
+                return FOUND;
+            }
+            if(nodes >= nodeBudget || (nodes % CLOCK_INTERVAL == 0 &&
+                        System.nanoTime() - deadline >= 0)) {
+                return OUT_OF_BUDGET;
+            }
+
+            int left = lowerBound();
+            if(left < bestMovesLeft || (left == bestMovesLeft &&
+                        depth + 1 < bestMoves.length)) {
+                bestMovesLeft = left;
+                bestMoves = Arrays.copyOf(moves, depth + 1);
+            }
+
+            int estimate = depth + 1 + left;
+            if(estimate > bound) {
+                nextBound = Math.min(nextBound, estimate);
+                state.unslide(direction, moved, startChar, false);
+                continue;
+            }
+
+            depth++;
+            if(depth == moves.length) {
+                moves = Arrays.copyOf(moves, 2 * depth);
+                steps = Arrays.copyOf(steps, 2 * depth);
+                startChars = Arrays.copyOf(startChars, 2 * depth);
+                tried = Arrays.copyOf(tried, 2 * depth);
+            }
+            tried[depth] = 0;
+        }
+        return nextBound;
+    }
+
+    /**
+     * Solves the level given on the command line and prints the result
+     */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1 && args.length != 3) {
+            System.out.print(USAGE);
+            return;
+        }
+        GameState start = Streamline.readState(args[0]);
+        long nodeBudget = UNLIMITED;
+        long millis = UNLIMITED;
+        if (args.length == 3) {
+            nodeBudget = Long.parseLong(args[1]);
+            millis = (long) (Double.parseDouble(args[2]) * 1000);
+        }
+        System.out.println(solve(start, nodeBudget, millis));
+    }
+}
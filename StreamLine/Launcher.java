@@ -0,0 +1,200 @@
+/**
+ * File: Launcher.java
+ *
+ * Included below is a single command line entry point for everything that
+ * runs without a window: terminal play, script replay, solving, converting
+ * levels and the level pack tools.
+ */
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+
+/**
+ * The Launcher class picks a command by its first argument and hands the
+ * rest of the command line to it. It never touches a JavaFX class, so no
+ * command pays for starting the JavaFX toolkit, and only the classes of the
+ * chosen command are ever loaded.
+ *
+ * Short jobs spend most of their time starting the JVM and loading classes.
+ * The path to the first board is kept free of lambdas, String.format() and
+ * regular expressions, which all load and link many classes the first time
+ * they are used, and the classes it does load can be kept in a class data
+ * sharing archive so that later runs map them instead of loading them:
+ *
+ *   java -XX:ArchiveClassesAtExit=streamline.jsa Launcher show level1
+ *   java -XX:SharedArchiveFile=streamline.jsa Launcher play level1
+ *
+ * With --time before the command, the milliseconds from the start of the JVM
+ * to the end of the command are printed to standard error. The show command
+ * prints a level and returns, so its time is the time to the first board.
+ */
+
+public class Launcher {
+    static final String USAGE =
+        "Usage: \n" +
+        "> java Launcher [--time] <command> <arguments>\n" +
+        "\n" +
+        "Commands:\n" +
+        "  show <filename>                     - to print a level\n" +
+        "  play [--ansi] [filename]            - to play a level, or a rando" +
+        "m level\n" +
+        "  marathon <filename>                 - to play a level too large f" +
+        "or the board\n" +
+        "  replay <script> <filenames>         - to play a script on levels," +
+        " see ScriptRunner\n" +
+        "  solve <filename> [nodes seconds]    - to find a shortest solution" +
+        "\n" +
+        "  psolve <filename> [threads states]  - to find any solution on all" +
+        " cores\n" +
+        "  solutions <cache> <levels>          - to solve levels, reusing so" +
+        "lutions kept in\n" +
+        "                                        the cache file\n" +
+        "  convert <in> <out> [--canonical]    - to rewrite a level, turned " +
+        "to its canonical\n" +
+        "                                        orientation if asked\n" +
+        "  analyze <arguments>                 - see LevelAnalyzer\n" +
+        "  playout <arguments>                 - see PlayoutEvaluator\n" +
+        "  dedup <directory>                   - see LevelDedup\n" +
+        "  store <directory>                   - see LevelStore\n" +
+        "  pipeline <arguments>                - see LevelPipeline\n" +
+        "  thumbnails <arguments>              - see ThumbnailGenerator\n";
+
+    // options
+    private static final String TIME_OPTION = "--time";
+    private static final String CANONICAL_OPTION = "--canonical";
+
+    // commands
+    private static final String SHOW = "show";
+    private static final String PLAY = "play";
+    private static final String MARATHON = "marathon";
+    private static final String REPLAY = "replay";
+    private static final String SOLVE = "solve";
+    private static final String PARALLEL_SOLVE = "psolve";
+    private static final String SOLUTIONS = "solutions";
+    private static final String CONVERT = "convert";
+    private static final String ANALYZE = "analyze";
+    private static final String PLAYOUT = "playout";
+    private static final String DEDUP = "dedup";
+    private static final String STORE = "store";
+    private static final String PIPELINE = "pipeline";
+    private static final String THUMBNAILS = "thumbnails";
+
+    // report statements
+    private static final String ELAPSED = "%s took %d ms since JVM start";
+
+    /**
+     * Runs the command given on the command line
+     */
+
+    public static void main(String[] args) throws Exception {
+        boolean time = args.length > 0 && args[0].equals(TIME_OPTION);
+        int first = time ? 1 : 0;
+        if(args.length == first) {
+            System.out.print(USAGE);
+            return;
+        }
+        String command = args[first];
+        String[] rest = Arrays.copyOfRange(args, first + 1, args.length);
+
+        if(!run(command, rest)) {
+            System.out.print(USAGE);
+            return;
+        }
+        if(time) {
+            long end = System.currentTimeMillis();
+            // read only now, since the management classes are slow to load
+            long start = ManagementFactory.getRuntimeMXBean().getStartTime();
+            System.out.flush();
+            System.err.println(String.format(ELAPSED, command, end - start));
+        }
+    }
+
+    /**
+     * Runs a command
+     *
+     * @param String command name of the command
+     * @param String[] args arguments of the command
+     * @return boolean false if there is no such command or the arguments are
+     *                 wrong
+     */
+
+    static boolean run(String command, String[] args) throws Exception {
+        switch(command) {
+            case SHOW:
+                if(args.length != 1) {
+                    return false;
+                }
+                System.out.print(Streamline.readState(args[0]));
+                System.out.flush();
+                return true;
+            case PLAY:
+                Streamline.main(args);
+                return true;
+            case MARATHON:
+                if(args.length != 1) {
+                    return false;
+                }
+                Streamline.playMarathon(args[0]);
+                return true;
+            case REPLAY:
+                ScriptRunner.main(args);
+                return true;
+            case SOLVE:
+                IdaSolver.main(args);
+                return true;
+            case PARALLEL_SOLVE:
+                ParallelSolver.main(args);
+                return true;
+            case SOLUTIONS:
+                SolutionCache.main(args);
+                return true;
+            case CONVERT:
+                return convert(args);
+            case ANALYZE:
+                LevelAnalyzer.main(args);
+                return true;
+            case PLAYOUT:
+                PlayoutEvaluator.main(args);
+                return true;
+            case DEDUP:
+                LevelDedup.main(args);
+                return true;
+            case STORE:
+                LevelStore.main(args);
+                return true;
+            case PIPELINE:
+                LevelPipeline.main(args);
+                return true;
+            case THUMBNAILS:
+                ThumbnailGenerator.main(args);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Reads a level and writes it again in the format of saveToFile(),
+     * turned to its canonical orientation if asked, so that levels that are
+     * rotations or mirror images of each other are written the same way
+     *
+     * @param String[] args input file, output file and an optional
+     *                      --canonical
+     * @return boolean false if the arguments are wrong
+     */
+
+    private static boolean convert(String[] args) throws IOException {
+        boolean canonical = args.length == 3 &&
+            args[2].equals(CANONICAL_OPTION);
+        if(args.length != 2 && !canonical) {
+            return false;
+        }
+        GameState state = Streamline.readState(args[0]);
+        if(canonical) {
+            state = LevelSymmetry.canonicalForm(state);
+        }
+        Streamline.writeState(state, args[1]);
+        return true;
+    }
+}
@@ -0,0 +1,471 @@
+/**
+ * File: LevelAnalyzer.java
+ *
+ * Included below is a headless tool that rates every level in a directory by
+ * difficulty without playing it. Levels are read in the format written by
+ * Streamline.saveToFile(), analyzed in parallel and written to a CSV or JSON
+ * report sorted from easiest to hardest.
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * The LevelAnalyzer class explores every state reachable from the start of a
+ * level with a depth-first search that slides and unslides a single
+ * GameState, remembering each state by fingerprint. Every state change adds
+ * trail, so states never repeat along a path and the minimum number of moves
+ * to the goal can be computed bottom up. The path is kept in arrays rather
+ * than on the call stack, as in IdaSolver, so a level with a solution of
+ * many thousand moves is searched as any other. The search gives up on a
+ * level once it has seen a fixed number of states, so that one huge level
+ * cannot hold up the whole corpus, and a level whose analysis fails is
+ * reported with the error instead of stopping the others.
+ *
+ * Given a SolutionCache file, levels cut short by the state limit, whose
+ * solution length may be unknown or longer than the shortest, take their
+ * solution length from the cache instead, and only levels not in it yet are
+ * solved with IdaSolver and added to it. Levels searched to the end need no
+ * cache, since the search already finds their shortest solution along with
+ * the other statistics.
+ */
+
+public class LevelAnalyzer {
+    static final String USAGE =
+        "Usage: \n" +
+        "> java LevelAnalyzer <directory>               - to print a CSV " +
+        "difficulty report\n" +
+        "> java LevelAnalyzer <directory> <report>      - to write the re" +
+        "port to a .csv or .json file\n" +
+        "> java LevelAnalyzer <directory> <report> <n>  - to stop explori" +
+        "ng a level after n states\n" +
+        "> java LevelAnalyzer <directory> <report> <n> <cache>\n" +
+        "                                               - to also take th" +
+        "e solution length of\n" +
+        "                                                 levels cut shor" +
+        "t from a SolutionCache\n";
+
+    // states explored per level before giving up
+    static final int DEFAULT_STATE_LIMIT = 200000;
+
+    // results of a search below a state
+    static final int UNSOLVABLE = -1;
+    static final int UNKNOWN = -2;
+
+    // returned by visit() for a state whose moves are still to be tried
+    private static final int EXPANDED = -3;
+
+    // initial length of the path arrays
+    private static final int INITIAL_DEPTH = 64;
+
+    // all directions in ordinal order
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    // report formats
+    private static final String JSON_EXTENSION = ".json";
+    private static final String CSV_HEADER = "level,height,width," +
+        "solution_length,reachable_states,dead_ends,branching_factor," +
+        "truncated,difficulty,error";
+    private static final String CSV_ROW = "%s,%d,%d,%d,%d,%d,%.3f,%b,%s,%s";
+    private static final String JSON_ROW = "  {\"level\": \"%s\", " +
+        "\"height\": %d, \"width\": %d, \"solution_length\": %d, " +
+        "\"reachable_states\": %d, \"dead_ends\": %d, " +
+        "\"branching_factor\": %.3f, \"truncated\": %b, " +
+        "\"difficulty\": %s, \"error\": %s}";
+    private static final String DIFFICULTY = "%.3f";
+    private static final String CSV_NO_DIFFICULTY = "";
+    private static final String JSON_NO_DIFFICULTY = "null";
+    private static final String CSV_NO_ERROR = "";
+    private static final String JSON_NO_ERROR = "null";
+    private static final String JSON_ERROR = "\"%s\"";
+    private static final String UNREADABLE = "Skipping unreadable level %s";
+    private static final String FAILED = "Could not analyze level %s: %s";
+    private static final String SUMMARY = "Analyzed %d levels in %d ms";
+
+    /**
+     * The Report class holds the statistics of a single level
+     */
+
+    static class Report {
+        String level;
+        int height;
+        int width;
+
+        // fewest moves to the goal, or UNSOLVABLE or UNKNOWN
+        int solutionLength;
+
+        // distinct states seen, the start included
+        int reachableStates;
+
+        // states seen from which the goal can no longer be reached
+        int deadEnds;
+
+        // average number of moves that change the state
+        double branchingFactor;
+
+        // true if the state limit was hit before the search finished
+        boolean truncated;
+
+        // name of the error that stopped the analysis, or null
+        String error;
+
+        /**
+         * Returns a difficulty score that grows with the solution length,
+         * with the share of states that are dead ends and, more slowly, with
+         * the size of the state space. Levels without a known solution are
+         * rated infinitely hard so that they sort last.
+         *
+         * @return double difficulty score
+         */
+
+        double getDifficulty() {
+            if(solutionLength < 0) {
+                return Double.POSITIVE_INFINITY;
+            }
+            double deadEndShare = (double) deadEnds / reachableStates;
+            return solutionLength * (1 + deadEndShare)
+                + Math.log(reachableStates) / Math.log(2);
+        }
+
+        /**
+         * Formats this report as a row of the given report format
+         *
+         * @param String format CSV_ROW or JSON_ROW
+         * @return String formatted row
+         */
+
+        String format(String format) {
+            String difficulty = String.format(Locale.ROOT, DIFFICULTY,
+                    getDifficulty());
+            boolean json = format.equals(JSON_ROW);
+            if(solutionLength < 0) {
+                difficulty = json ? JSON_NO_DIFFICULTY : CSV_NO_DIFFICULTY;
+            }
+            String failure = json ? JSON_NO_ERROR : CSV_NO_ERROR;
+            if(error != null) {
+                failure = json ? String.format(JSON_ERROR, error) : error;
+            }
+            return String.format(Locale.ROOT, format, level, height, width,
+                    solutionLength, reachableStates, deadEnds,
+                    branchingFactor, truncated, difficulty, failure);
+        }
+    }
+
+    // per level search state
+    private final GameState state;
+    private final int stateLimit;
+    private final Map<Long, Integer> memo = new HashMap<Long, Integer>();
+    private int deadEnds;
+    private long movesFound;
+    private int statesExpanded;
+    private boolean truncated;
+
+    // the current path, one entry per state on it: the state, its square
+    // sum, its fewest moves so far, the directions tried from it and the
+    // move to the next state
+    private long[] fingerprints = new long[INITIAL_DEPTH];
+    private long[] squareSums = new long[INITIAL_DEPTH];
+    private int[] bests = new int[INITIAL_DEPTH];
+    private int[] tried = new int[INITIAL_DEPTH];
+    private int[] steps = new int[INITIAL_DEPTH];
+    private char[] startChars = new char[INITIAL_DEPTH];
+
+    /**
+     * Prepares a search of the given level
+     *
+     * @param GameState start start of the level, modified during the search
+     *                  but restored when it ends
+     * @param int stateLimit states to explore before giving up
+     */
+
+    private LevelAnalyzer(GameState start, int stateLimit) {
+        this.state = start;
+        this.stateLimit = stateLimit;
+    }
+
+    /**
+     * Analyzes a single level
+     *
+     * @param String level name of the level in the report
+     * @param GameState start start of the level, which is left unchanged
+     * @param int stateLimit states to explore before giving up
+     * @return Report statistics of the level
+     */
+
+    static Report analyze(String level, GameState start, int stateLimit) {
+        LevelAnalyzer analyzer = new LevelAnalyzer(new GameState(start),
+                stateLimit);
+        Report report = new Report();
+        report.level = level;
+        report.height = start.board.length;
+        report.width = start.board[0].length;
+        report.solutionLength = analyzer.search(
+                LevelSymmetry.squareSum(start));
+        report.reachableStates = analyzer.memo.size();
+        report.deadEnds = analyzer.deadEnds;
+        report.truncated = analyzer.truncated;
+        if(analyzer.statesExpanded > 0) {
+            report.branchingFactor = (double) analyzer.movesFound
+                / analyzer.statesExpanded;
+        }
+        return report;
+    }
+
+    /**
+     * Returns the fewest moves from the current state to the goal and
+     * records the statistics of every state below it.
+     *
+     * @param long squareSum sum of the square keys of the current board
+     * @return int fewest moves, UNSOLVABLE, or UNKNOWN if the state limit
+     *         cut the search short
+     */
+
+    private int search(long squareSum) {
+        int result = visit(squareSum, 0);
+        if(result != EXPANDED) {
+            return result;
+        }
+        int depth = 0;
+        while(true) {
+            // every move from this state was tried, back to its parent
+            if(tried[depth] == DIRECTIONS.length) {
+                int best = bests[depth];
+                if(best == UNSOLVABLE) {
+                    deadEnds++;
+                }
+                memo.put(fingerprints[depth], best);
+                if(depth == 0) {
+                    return best;
+                }
+                depth--;
+                // states on the path never passed the level, or they would
+                // not have been expanded
+                state.unslide(DIRECTIONS[tried[depth] - 1], steps[depth],
+                        startChars[depth], false);
+                record(depth, best);
+                continue;
+            }
+
+            Direction direction = DIRECTIONS[tried[depth]++];
+            int startRow = state.playerRow;
+            int startCol = state.playerCol;
+            char startChar = state.board[startRow][startCol];
+            int moved = state.slide(direction);
+            if(moved == 0) {
+                continue;
+            }
+            movesFound++;
+            steps[depth] = moved;
+            startChars[depth] = startChar;
+
+            // every square left behind became trail
+            long childSum = squareSums[depth];
+            if(startChar != GameState.SPACE_CHAR) {
+                childSum -= LevelSymmetry.squareKey(startRow, startCol,
+                        startChar);
+            }
+            for(int i = 0; i < moved; i++) {
+                childSum += LevelSymmetry.squareKey(
+                        startRow + i * direction.getRowStep(),
+                        startCol + i * direction.getColStep(),
+                        GameState.TRAIL_CHAR);
+            }
+
+            int below = visit(childSum, depth + 1);
+            if(below == EXPANDED) {
+                depth++;
+                continue;
+            }
+            state.unslide(direction, moved, startChar, false);
+            record(depth, below);
+        }
+    }
+
+    /**
+     * Looks up the current state, and puts it on the path at the given
+     * depth if its moves are still to be tried
+     *
+     * @param long squareSum sum of the square keys of the current board
+     * @param int depth moves made since the start of the level
+     * @return int fewest moves already known, UNKNOWN if the state limit
+     *         was hit, or EXPANDED
+     */
+
+    private int visit(long squareSum, int depth) {
+        long fingerprint = LevelSymmetry.finish(squareSum, state.board.length,
+                state.board[0].length, state.playerRow, state.playerCol,
+                state.goalRow, state.goalCol);
+        Integer known = memo.get(fingerprint);
+        if(known != null) {
+            return known;
+        }
+        if(state.levelPassed) {
+            memo.put(fingerprint, 0);
+            return 0;
+        }
+        if(memo.size() >= stateLimit) {
+            truncated = true;
+            return UNKNOWN;
+        }
+
+        // states can not repeat along a path, so this is never read back
+        // before it is replaced once the state is left
+        memo.put(fingerprint, UNKNOWN);
+        statesExpanded++;
+
+        if(depth == tried.length) {
+            fingerprints = Arrays.copyOf(fingerprints, 2 * depth);
+            squareSums = Arrays.copyOf(squareSums, 2 * depth);
+            bests = Arrays.copyOf(bests, 2 * depth);
+            tried = Arrays.copyOf(tried, 2 * depth);
+            steps = Arrays.copyOf(steps, 2 * depth);
+            startChars = Arrays.copyOf(startChars, 2 * depth);
+        }
+        fingerprints[depth] = fingerprint;
+        squareSums[depth] = squareSum;
+        bests[depth] = UNSOLVABLE;
+        tried[depth] = 0;
+        return EXPANDED;
+    }
+
+    /**
+     * Takes the result of a move into the fewest moves of the state it was
+     * made from
+     *
+     * @param int depth depth of the state the move was made from
+     * @param int below result of the state the move led to
+     */
+
+    private void record(int depth, int below) {
+        if(below >= 0) {
+            if(bests[depth] < 0 || below + 1 < bests[depth]) {
+                bests[depth] = below + 1;
+            }
+        }
+        else if(below == UNKNOWN && bests[depth] == UNSOLVABLE) {
+            bests[depth] = UNKNOWN;
+        }
+    }
+
+    /**
+     * Reads and analyzes a single level file
+     *
+     * @param Path file file to read
+     * @param int stateLimit states to explore before giving up
+     * @param SolutionCache cache solutions of levels cut short, or null
+     * @return Report statistics of the level, or null if the file is not a
+     *         level
+     */
+
+    private static Report analyzeFile(Path file, int stateLimit,
+                                      SolutionCache cache) {
+        GameState start;
+        try {
+            start = Streamline.readState(file.toString());
+        } catch (IOException | RuntimeException e) {
+            System.err.println(String.format(UNREADABLE, file));
+            return null;
+        }
+        String level = file.getFileName().toString();
+        try {
+            Report report = analyze(level, start, stateLimit);
+            // a search cut short may have missed the shortest solution
+            if(cache != null && report.truncated) {
+                IdaSolver.Result result = cache.solve(start,
+                        SolutionCache.SOLVER_NODES);
+                if(result.solved) {
+                    report.solutionLength = result.moves.length;
+                }
+                else if(!result.exhausted) {
+                    report.solutionLength = UNSOLVABLE;
+                }
+            }
+            return report;
+        } catch (IOException | RuntimeException | StackOverflowError |
+                OutOfMemoryError e) {
+            // one level that fails is reported, not left to stop the rest
+            System.err.println(String.format(FAILED, level, e));
+            Report report = new Report();
+            report.level = level;
+            report.height = start.board.length;
+            report.width = start.board[0].length;
+            report.solutionLength = UNKNOWN;
+            report.truncated = true;
+            report.error = e.getClass().getSimpleName();
+            return report;
+        }
+    }
+
+    /**
+     * Analyzes every level of the directory given on the command line and
+     * writes the sorted report.
+     */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 4) {
+            System.out.print(USAGE);
+            return;
+        }
+        int stateLimit = DEFAULT_STATE_LIMIT;
+        if (args.length >= 3) {
+            stateLimit = Integer.parseInt(args[2]);
+        }
+        final int limit = stateLimit;
+
+        long startTime = System.currentTimeMillis();
+        List<Report> reports;
+        // files are listed lazily so that the directory is never held in
+        // memory, only the small per level reports are
+        SolutionCache cache = args.length == 4 ?
+            new SolutionCache(Paths.get(args[3])) : null;
+        try(Stream<Path> listing = Files.list(Paths.get(args[0]))) {
+            reports = listing.parallel()
+                .filter(Files::isRegularFile)
+                .map(file -> analyzeFile(file, limit, cache))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        } finally {
+            if(cache != null) {
+                cache.close();
+            }
+        }
+        reports.sort(Comparator.comparingDouble(Report::getDifficulty)
+                .thenComparing(report -> report.level));
+
+        boolean json = args.length > 1 && args[1].endsWith(JSON_EXTENSION);
+        PrintWriter writer;
+        if (args.length > 1) {
+            writer = new PrintWriter(Files.newBufferedWriter(
+                        Paths.get(args[1])));
+        }
+        else {
+            writer = new PrintWriter(new BufferedWriter(
+                        new OutputStreamWriter(System.out)));
+        }
+        try {
+            if(json) {
+                writer.println("[");
+                for(int i = 0; i < reports.size(); i++) {
+                    writer.print(reports.get(i).format(JSON_ROW));
+                    writer.println(i < reports.size() - 1 ? "," : "");
+                }
+                writer.println("]");
+            }
+            else {
+                writer.println(CSV_HEADER);
+                for(Report report : reports) {
+                    writer.println(report.format(CSV_ROW));
+                }
+            }
+        } finally {
+            writer.flush();
+            if (args.length > 1) {
+                writer.close();
+            }
+        }
+        System.err.println(String.format(SUMMARY, reports.size(),
+                    System.currentTimeMillis() - startTime));
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * File: LevelDedup.java
+ *
+ * Included below is a command line tool that finds levels in a directory
+ * which are the same level up to rotation or reflection.
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+/**
+ * The LevelDedup class loads every level file of a directory in parallel,
+ * reduces each level to its canonical fingerprint and prints every group of
+ * files that share a fingerprint, largest group first.
+ */
+
+public class LevelDedup {
+    static final String USAGE =
+        "Usage: \n" +
+        "> java LevelDedup <directory>   - to report levels in the directory" +
+        " that are rotations\n" +
+        "                                  or mirror images of each other\n";
+
+    // report statements
+    private static final String CLUSTER = "%d duplicates (fingerprint %016x):";
+    private static final String CLUSTER_FILE = "    %s";
+    private static final String SUMMARY =
+        "%d levels, %d distinct, %d duplicate groups";
+    private static final String UNREADABLE = "Skipping unreadable level %s";
+
+    /**
+     * Returns the canonical fingerprint of every readable level file in the
+     * given directory, grouped by fingerprint.
+     *
+     * @param Path directory directory of level files
+     * @return Map<Long, List<Path>> files of each canonical fingerprint
+     */
+
+    static Map<Long, List<Path>> fingerprintDirectory(Path directory)
+        throws IOException {
+        List<Path> files;
+        try(Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(Files::isRegularFile).sorted()
+                .collect(Collectors.toList());
+        }
+
+        ConcurrentMap<Long, List<Path>> groups = files.parallelStream()
+            .map(file -> new AbstractMap.SimpleImmutableEntry<Path, GameState>(
+                        file, readLevel(file)))
+            .filter(level -> level.getValue() != null)
+            .collect(Collectors.groupingByConcurrent(
+                        level -> LevelSymmetry.canonicalFingerprint(
+                            level.getValue()),
+                        Collectors.mapping(level -> level.getKey(),
+                            Collectors.toList())));
+
+        // parallel collection loses the directory order within a group
+        Map<Long, List<Path>> sorted = new HashMap<Long, List<Path>>();
+        for(Map.Entry<Long, List<Path>> group : groups.entrySet()) {
+            List<Path> members = new ArrayList<Path>(group.getValue());
+            Collections.sort(members);
+            sorted.put(group.getKey(), members);
+        }
+        return sorted;
+    }
+
+    /**
+     * Reads the level stored in the given file
+     *
+     * @param Path file file to read
+     * @return GameState level, or null if the file is not a level
+     */
+
+    private static GameState readLevel(Path file) {
+        try {
+            return Streamline.readState(file.toString());
+        } catch (IOException | RuntimeException e) {
+            System.err.println(String.format(UNREADABLE, file));
+            return null;
+        }
+    }
+
+    /**
+     * Prints every group of duplicate levels in the directory given on the
+     * command line.
+     */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.print(USAGE);
+            return;
+        }
+
+        Map<Long, List<Path>> groups = fingerprintDirectory(Paths.get(args[0]));
+
+        List<Map.Entry<Long, List<Path>>> duplicates =
+            new ArrayList<Map.Entry<Long, List<Path>>>();
+        int levels = 0;
+        for(Map.Entry<Long, List<Path>> group : groups.entrySet()) {
+            levels += group.getValue().size();
+            if(group.getValue().size() > 1) {
+                duplicates.add(group);
+            }
+        }
+        // largest groups first, then by first file name
+        duplicates.sort((a, b) -> {
+            int bySize = Integer.compare(b.getValue().size(),
+                a.getValue().size());
+            if(bySize != 0) {
+                return bySize;
+            }
+            return a.getValue().get(0).compareTo(b.getValue().get(0));
+        });
+
+        for(Map.Entry<Long, List<Path>> group : duplicates) {
+            System.out.println(String.format(CLUSTER, group.getValue().size(),
+                        group.getKey()));
+            for(Path file : group.getValue()) {
+                System.out.println(String.format(CLUSTER_FILE, file));
+            }
+        }
+        System.out.println(String.format(SUMMARY, levels, groups.size(),
+                    duplicates.size()));
+    }
+}
@@ -0,0 +1,446 @@
+/**
+ * File: LevelPipeline.java
+ *
+ * Included below is a command line tool that builds a level pack. Random
+ * levels are generated, checked for a solution, deduplicated, rated and
+ * written to a directory, each step running on threads of its own.
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * The LevelPipeline class connects its stages with bounded queues. A stage
+ * takes levels from its input queue, works on them on its own thread pool
+ * and puts the ones it keeps on the input queue of the next stage. A full
+ * queue blocks the stage feeding it, so a slow stage holds back the stages
+ * before it instead of letting levels pile up in memory.
+ *
+ * The stages are generate, solve, dedup, rate and write. Duplicates are
+ * dropped before rating, the most expensive stage, and after solving, so
+ * that only solvable levels are remembered. Once enough levels have been
+ * written every stage stops. While the pipeline runs, the throughput of
+ * every stage and the depth of its input queue are printed regularly, which
+ * shows the stage that needs more threads.
+ *
+ * The index of the pack is written next to the directory rather than in
+ * it, as <directory>.csv, so that the directory holds nothing but levels
+ * for the tools and the GUI that read every file in it.
+ */
+
+public class LevelPipeline {
+    static final String USAGE =
+        "Usage: \n" +
+        "> java LevelPipeline <directory> <count>                          " +
+        " - to write count\n" +
+        "                                                                   " +
+        "  levels of 6*5\n" +
+        "> java LevelPipeline <directory> <count> <height> <width> <obstacle" +
+        "s> - to choose the size\n" +
+        "The index of the pack is written to <directory>.csv\n";
+
+    // levels waiting between two stages
+    static final int QUEUE_CAPACITY = 256;
+
+    // nodes the solver may visit per level
+    static final long SOLVER_NODES = 1000000;
+
+    // states the analyzer may explore per level
+    static final int RATING_STATES = 200000;
+
+    // obstacles per level unless asked otherwise, as in Streamline()
+    static final int DEFAULT_OBSTACLES = 3;
+
+    // shortest solution worth keeping
+    static final int MIN_SOLUTION = 2;
+
+    // milliseconds between reports, and to wait on a queue
+    private static final long REPORT_INTERVAL = 1000;
+    private static final long POLL_MILLIS = 100;
+
+    // output
+    private static final String LEVEL_NAME = "level%06d";
+    private static final String PACK_INDEX = "%s.csv";
+    private static final String PACK_HEADER =
+        "level,solution_length,difficulty";
+    private static final String PACK_ROW = "%s,%d,%.3f";
+    private static final String STAGE_REPORT =
+        "%-8s %2d threads %9d in %9d out %9.0f/s  queue %3d/%d";
+    private static final String SUMMARY = "Wrote %d levels in %d ms";
+
+    /**
+     * The Level class carries a level and what the stages learned about it
+     */
+
+    static class Level {
+        final GameState state;
+        int solutionLength;
+        double difficulty;
+        String name;
+
+        Level(GameState state) {
+            this.state = state;
+        }
+    }
+
+    /**
+     * The Stage class runs one step of the pipeline on its own threads.
+     * Work returns the level to pass on, or null to drop it. A stage
+     * without an input queue makes levels out of nothing.
+     */
+
+    class Stage {
+        final String name;
+        final int threads;
+        final BlockingQueue<Level> input;
+        final UnaryOperator<Level> work;
+        BlockingQueue<Level> output;
+
+        final LongAdder in = new LongAdder();
+        final LongAdder out = new LongAdder();
+        private ExecutorService pool;
+
+        /**
+         * Creates a stage
+         *
+         * @param String name name in reports
+         * @param int threads number of threads
+         * @param boolean hasInput false for the first stage
+         * @param UnaryOperator<Level> work work on one level
+         */
+
+        Stage(String name, int threads, boolean hasInput,
+              UnaryOperator<Level> work) {
+            this.name = name;
+            this.threads = threads;
+            this.input = hasInput
+                ? new ArrayBlockingQueue<Level>(QUEUE_CAPACITY) : null;
+            this.work = work;
+        }
+
+        /**
+         * Starts the threads of this stage
+         */
+
+        void start() {
+            pool = Executors.newFixedThreadPool(threads, runnable -> {
+                    Thread thread = new Thread(runnable, name);
+                    thread.setDaemon(true);
+                    return thread;
+                    });
+            for(int i = 0; i < threads; i++) {
+                pool.execute(this::run);
+            }
+        }
+
+        /**
+         * Takes, works on and passes on levels until the pipeline stops
+         */
+
+        private void run() {
+            try {
+                while(!stopped) {
+                    Level level = null;
+                    if(input != null) {
+                        level = input.poll(POLL_MILLIS,
+                                TimeUnit.MILLISECONDS);
+                        if(level == null) {
+                            continue;
+                        }
+                    }
+                    in.increment();
+                    level = work.apply(level);
+                    if(level == null) {
+                        continue;
+                    }
+                    out.increment();
+                    // waits for room, unless the pipeline stops meanwhile
+                    while(output != null && !stopped &&
+                            !output.offer(level, POLL_MILLIS,
+                                TimeUnit.MILLISECONDS)) {
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable e) {
+                // an Error ends this thread like an exception, so the
+                // pipeline fails instead of waiting on it forever
+                failure = e;
+                stop();
+            }
+        }
+
+        /**
+         * Returns a line with the statistics of this stage
+         *
+         * @param long millis milliseconds since the pipeline started
+         * @return String report line
+         */
+
+        String report(long millis) {
+            long done = out.sum();
+            return String.format(Locale.ROOT, STAGE_REPORT, name, threads,
+                    in.sum(), done, millis == 0 ? 0 : done * 1000.0 / millis,
+                    input == null ? 0 : input.size(),
+                    input == null ? 0 : QUEUE_CAPACITY);
+        }
+    }
+
+    private final Path directory;
+    private final int count;
+    private final int height;
+    private final int width;
+    private final int obstacles;
+    private final List<Stage> stages = new ArrayList<Stage>();
+
+    // canonical fingerprints of the solvable levels seen
+    private final Set<Long> seen = ConcurrentHashMap.newKeySet();
+
+    // levels written so far, and the index of the pack
+    private final AtomicInteger written = new AtomicInteger();
+    private PrintWriter packIndex;
+
+    private volatile boolean stopped;
+    private volatile Throwable failure;
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    /**
+     * Sets up a pipeline
+     *
+     * @param Path directory directory to write to
+     * @param int count number of levels to write
+     * @param int height height of the levels
+     * @param int width width of the levels
+     * @param int obstacles obstacles per level
+     */
+
+    LevelPipeline(Path directory, int count, int height, int width,
+                  int obstacles) {
+        this.directory = directory;
+        this.count = count;
+        this.height = height;
+        this.width = width;
+        this.obstacles = obstacles;
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        int half = Math.max(1, cores / 2);
+        stages.add(new Stage("generate", 1, false, level -> generate()));
+        stages.add(new Stage("solve", half, true, this::solve));
+        stages.add(new Stage("dedup", 1, true, this::dedup));
+        stages.add(new Stage("rate", half, true, this::rate));
+        stages.add(new Stage("write", 1, true, this::write));
+        for(int i = 0; i + 1 < stages.size(); i++) {
+            stages.get(i).output = stages.get(i + 1).input;
+        }
+    }
+
+    /**
+     * Makes a random level with the player and goal on different squares.
+     * The obstacles never cover the player or the goal.
+     *
+     * @return Level new level
+     */
+
+    private Level generate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int squares = height * width;
+        int player = random.nextInt(squares);
+        int goal = random.nextInt(squares - 1);
+        if(goal >= player) {
+            goal++;
+        }
+        GameState state = new GameState(height, width, player / width,
+                player % width, goal / width, goal % width);
+        state.addRandomObstacles(obstacles);
+        return new Level(state);
+    }
+
+    /**
+     * Keeps levels with a solution of at least MIN_SOLUTION moves
+     *
+     * @param Level level level to check
+     * @return Level the level, or null
+     */
+
+    private Level solve(Level level) {
+        IdaSolver.Result result = IdaSolver.solve(level.state, SOLVER_NODES,
+                IdaSolver.UNLIMITED);
+        if(!result.solved || result.moves.length < MIN_SOLUTION) {
+            return null;
+        }
+        level.solutionLength = result.moves.length;
+        return level;
+    }
+
+    /**
+     * Keeps the first of every group of levels that are rotations or mirror
+     * images of each other
+     *
+     * @param Level level level to check
+     * @return Level the level, or null
+     */
+
+    private Level dedup(Level level) {
+        return seen.add(LevelSymmetry.canonicalFingerprint(level.state))
+            ? level : null;
+    }
+
+    /**
+     * Rates the difficulty of a level
+     *
+     * @param Level level level to rate
+     * @return Level the level
+     */
+
+    private Level rate(Level level) {
+        LevelAnalyzer.Report report = LevelAnalyzer.analyze(null,
+                level.state, RATING_STATES);
+        level.difficulty = report.getDifficulty();
+        return level;
+    }
+
+    /**
+     * Writes a level in the format read by Streamline.loadFromFile() and
+     * adds it to the index of the pack, stopping the pipeline once enough
+     * levels are written
+     *
+     * @param Level level level to write
+     * @return Level the level, or null once the pack is full
+     */
+
+    private Level write(Level level) {
+        int number = written.getAndIncrement();
+        if(number >= count) {
+            return null;
+        }
+        level.name = String.format(LEVEL_NAME, number);
+        try {
+            Streamline.writeState(level.state,
+                    directory.resolve(level.name).toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        synchronized(this) {
+            packIndex.println(String.format(Locale.ROOT, PACK_ROW,
+                        level.name, level.solutionLength, level.difficulty));
+        }
+        if(number + 1 == count) {
+            stop();
+        }
+        return level;
+    }
+
+    /**
+     * Stops every stage and wakes up run()
+     */
+
+    private void stop() {
+        stopped = true;
+        finished.countDown();
+    }
+
+    /**
+     * Runs the pipeline until the pack is written, reporting on the stages
+     * as it goes
+     *
+     * @param PrintStream log stream for the reports
+     */
+
+    void run(PrintStream log) throws IOException, InterruptedException {
+        Files.createDirectories(directory);
+        long startTime = System.currentTimeMillis();
+        try(PrintWriter index = new PrintWriter(Files.newBufferedWriter(
+                        indexFile(directory)))) {
+            packIndex = index;
+            packIndex.println(PACK_HEADER);
+            for(Stage stage : stages) {
+                stage.start();
+            }
+            while(!finished.await(REPORT_INTERVAL, TimeUnit.MILLISECONDS)) {
+                report(log, System.currentTimeMillis() - startTime);
+            }
+            for(Stage stage : stages) {
+                stage.pool.shutdown();
+            }
+            for(Stage stage : stages) {
+                stage.pool.awaitTermination(REPORT_INTERVAL,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+        if(failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if(failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if(failure != null) {
+            throw new IllegalStateException(failure);
+        }
+        long millis = System.currentTimeMillis() - startTime;
+        report(log, millis);
+        log.println(String.format(SUMMARY, Math.min(written.get(), count),
+                    millis));
+    }
+
+    /**
+     * Returns the file the index of a pack is written to, next to the
+     * directory of the pack
+     *
+     * @param Path directory directory of the pack
+     * @return Path index file
+     */
+
+    static Path indexFile(Path directory) {
+        Path absolute = directory.toAbsolutePath().normalize();
+        return absolute.resolveSibling(String.format(PACK_INDEX,
+                    absolute.getFileName()));
+    }
+
+    /**
+     * Prints a report line for every stage
+     *
+     * @param PrintStream log stream for the report
+     * @param long millis milliseconds since the pipeline started
+     */
+
+    private void report(PrintStream log, long millis) {
+        for(Stage stage : stages) {
+            log.println(stage.report(millis));
+        }
+        log.println();
+    }
+
+    /**
+     * Builds the pack described on the command line
+     */
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2 && args.length != 5) {
+            System.out.print(USAGE);
+            return;
+        }
+        int height = Streamline.DEFAULT_HEIGHT;
+        int width = Streamline.DEFAULT_WIDTH;
+        int obstacles = DEFAULT_OBSTACLES;
+        if (args.length == 5) {
+            height = Integer.parseInt(args[2]);
+            width = Integer.parseInt(args[3]);
+            obstacles = Integer.parseInt(args[4]);
+        }
+        int count = Integer.parseInt(args[1]);
+        Path directory = Paths.get(args[0]);
+        // addRandomObstacles() needs a free square for every obstacle, and
+        // the pipeline only stops once count levels are written
+        if (obstacles > height * width - 2 || count <= 0 ||
+                directory.toAbsolutePath().normalize().getFileName() == null) {
+            System.out.print(USAGE);
+            return;
+        }
+        new LevelPipeline(directory, count, height, width, obstacles)
+            .run(System.err);
+    }
+}
@@ -0,0 +1,569 @@
+/**
+ * File: LevelSelect.java
+ *
+ * This file creates the level select screen of the GUI, a scrollable grid of
+ * previews of every level in the directory being played. It only ever holds
+ * as many cells as fit in the window, so it opens and scrolls as quickly for
+ * a pack of a hundred thousand levels as for a pack of ten.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+
+import javafx.application.Platform;
+import javafx.scene.Group;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.KeyCode;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Text;
+
+/**
+ * This class lays the levels out in rows and creates a Cell for each place
+ * in the grid that can be seen, plus one row. Scrolling moves the cells, and
+ * a cell that leaves the window is given the level that comes into view,
+ * which is always a whole grid of cells further on, so most cells keep
+ * their level while the grid scrolls. Nothing is created per
+ * level.
+ *
+ * Previews are read from the level files on a background thread only when
+ * their cell is shown, and skipped if it was scrolled away in the meantime.
+ * Each preview is drawn into a pixel array on that thread, so the FX thread
+ * only copies finished pixels into a cell's image. The most recently used
+ * previews are kept in a cache of fixed size, which bounds the memory used
+ * however far the grid is scrolled.
+ */
+
+public class LevelSelect extends Group {
+    // size of a preview in pixels, and the space around it
+    static final int PREVIEW_SIZE = 112;
+    static final double CELL_GAP = 12;
+    static final double LABEL_HEIGHT = 18;
+
+    // previews kept for cells that scroll back into view
+    static final int CACHE_CAPACITY = 512;
+
+    static final Color BACKGROUND_COLOR = Color.GAINSBORO;
+    static final Color CELL_COLOR = Color.WHITESMOKE;
+    static final Color SELECTED_COLOR = GuiStreamline.GOAL_COLOR;
+    static final double SELECTED_STROKE = 4;
+
+    // player border, as in Player
+    private static final Color PLAYER_STROKE_COLOR = Color.LAVENDER;
+    private static final double STROKE_FRACTION = 0.1;
+
+    // half the side and corner radius of a square, in board squares
+    private static final double HALF_SQUARE = GuiStreamline.SQUARE_FRACTION / 2;
+    private static final double CORNER = GuiStreamline.SQUARE_FRACTION *
+        RoundedSquare.DEFAULT_ARC_FRACTION / 2;
+    private static final double HALF = 0.5;
+
+    private static final String UNREADABLE = " (unreadable)";
+
+    // stands for a level file that could not be read
+    private static final int[] NO_PREVIEW = new int[0];
+
+    private static final int BACKGROUND = argb(CELL_COLOR);
+    private static final int OBSTACLE = argb(GuiStreamline.OBSTACLE_COLOR);
+    private static final int TRAIL = argb(GuiStreamline.TRAIL_COLOR);
+    private static final int GOAL = argb(GuiStreamline.GOAL_COLOR);
+    private static final int PLAYER = argb(Color.BLUEVIOLET);
+    private static final int PLAYER_STROKE = argb(PLAYER_STROKE_COLOR);
+
+    /**
+     * This nested class shows one level of the grid: its preview and name
+     */
+
+    class Cell extends Group {
+        final Rectangle frame = new Rectangle(PREVIEW_SIZE, PREVIEW_SIZE);
+        final WritableImage image = new WritableImage(PREVIEW_SIZE,
+                PREVIEW_SIZE);
+        final Text label = new Text();
+        int index = -1;
+
+        Cell() {
+            frame.setFill(CELL_COLOR);
+            frame.setStrokeWidth(SELECTED_STROKE);
+            label.setY(PREVIEW_SIZE + LABEL_HEIGHT - SELECTED_STROKE);
+            getChildren().addAll(frame, new ImageView(image), label);
+            setOnMouseClicked(e -> {
+                    if(index >= 0) {
+                        onSelect.accept(index);
+                    }
+                    });
+        }
+
+        /**
+         * Gives the cell a level to show, reading its preview if it is not
+         * in the cache
+         *
+         * @param index the level to show
+         */
+
+        void show(int index) {
+            this.index = index;
+            label.setText(new File(files.get(index)).getName());
+            int[] pixels = cache.get(index);
+            if(pixels == null) {
+                draw(null);
+                request(index);
+            }
+            else {
+                draw(pixels);
+            }
+        }
+
+        /**
+         * Copies a preview into the image of the cell
+         *
+         * @param pixels the preview, NO_PREVIEW, or null to clear the image
+         */
+
+        void draw(int[] pixels) {
+            if(pixels == null || pixels == NO_PREVIEW) {
+                if(pixels == NO_PREVIEW) {
+                    label.setText(label.getText() + UNREADABLE);
+                }
+                pixels = blank;
+            }
+            image.getPixelWriter().setPixels(0, 0, PREVIEW_SIZE,
+                    PREVIEW_SIZE, PixelFormat.getIntArgbInstance(), pixels, 0,
+                    PREVIEW_SIZE);
+        }
+    }
+
+    private final List<String> files;
+    private final IntConsumer onSelect;
+    private final ExecutorService previewLoader;
+
+    private final Rectangle background = new Rectangle();
+    private final ArrayList<Cell> cells = new ArrayList<Cell>();
+    private final int[] blank = new int[PREVIEW_SIZE * PREVIEW_SIZE];
+
+    // recently used previews by level, least recently used first
+    private final LinkedHashMap<Integer, int[]> cache =
+        new LinkedHashMap<Integer, int[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Integer, int[]> eldest) {
+                return size() > CACHE_CAPACITY;
+            }
+        };
+
+    // levels whose previews are being read
+    private final Set<Integer> loading = new HashSet<Integer>();
+
+    // levels in view, read by previewLoader to skip stale requests
+    private volatile int firstVisible;
+    private volatile int lastVisible = -1;
+
+    private double width;
+    private double height;
+    private double scroll;
+    private int columns = 1;
+    private int selected;
+
+    /**
+     * Creates a hidden level select screen
+     *
+     * @param files    the level files in directory order, which may change
+     *                 while the screen exists as long as refresh() is called
+     * @param onSelect called with the index of the level the player picks
+     */
+
+    public LevelSelect(List<String> files, IntConsumer onSelect) {
+        this.files = files;
+        this.onSelect = onSelect;
+        this.previewLoader = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "level-previews");
+                thread.setDaemon(true);
+                return thread;
+                });
+        Arrays.fill(blank, BACKGROUND);
+        background.setFill(BACKGROUND_COLOR);
+        getChildren().add(background);
+        setVisible(false);
+    }
+
+    /**
+     * Returns a color as a 32 bit ARGB pixel
+     *
+     * @param color the color
+     * @return      the pixel
+     */
+
+    private static int argb(Color color) {
+        return (int) Math.round(color.getOpacity() * 255) << 24 |
+            (int) Math.round(color.getRed() * 255) << 16 |
+            (int) Math.round(color.getGreen() * 255) << 8 |
+            (int) Math.round(color.getBlue() * 255);
+    }
+
+    /**
+     * Returns true while the screen is shown
+     *
+     * @return true if shown
+     */
+
+    public boolean isShowing() {
+        return isVisible();
+    }
+
+    /**
+     * Shows the screen with the given level selected and in view
+     *
+     * @param selected index of the level to select
+     * @param width    width of the scene
+     * @param height   height of the scene
+     */
+
+    public void show(int selected, double width, double height) {
+        this.selected = Math.max(0, Math.min(selected, files.size() - 1));
+        setVisible(true);
+        resize(width, height);
+        scrollToSelected();
+    }
+
+    /**
+     * Hides the screen. Its cells are kept for the next time it is shown.
+     */
+
+    public void hide() {
+        setVisible(false);
+        firstVisible = 0;
+        lastVisible = -1;
+    }
+
+    /**
+     * Fits the grid to a new scene size
+     *
+     * @param width  width of the scene
+     * @param height height of the scene
+     */
+
+    public void resize(double width, double height) {
+        this.width = width;
+        this.height = height;
+        background.setWidth(width);
+        background.setHeight(height);
+        if(isShowing()) {
+            layoutCells();
+        }
+    }
+
+    /**
+     * Forgets the previews and shows the levels again, after files changed
+     */
+
+    public void refresh() {
+        cache.clear();
+        for(Cell cell : cells) {
+            cell.index = -1;
+        }
+        selected = Math.max(0, Math.min(selected, files.size() - 1));
+        if(isShowing()) {
+            layoutCells();
+        }
+    }
+
+    /**
+     * Scrolls the grid
+     *
+     * @param pixels distance to scroll, positive to scroll down
+     */
+
+    public void scrollBy(double pixels) {
+        scroll += pixels;
+        layoutCells();
+    }
+
+    /**
+     * Moves the selection with the arrow keys, Page Up, Page Down, Home and
+     * End, and picks the selected level with Enter
+     *
+     * @param keyCode the key that is pressed
+     */
+
+    public void handleKey(KeyCode keyCode) {
+        int rowsInView = Math.max(1, (int) (height / rowPitch()));
+        switch(keyCode) {
+            case LEFT:
+                selected--;
+                break;
+            case RIGHT:
+                selected++;
+                break;
+            case UP:
+                selected -= columns;
+                break;
+            case DOWN:
+                selected += columns;
+                break;
+            case PAGE_UP:
+                selected -= rowsInView * columns;
+                break;
+            case PAGE_DOWN:
+                selected += rowsInView * columns;
+                break;
+            case HOME:
+                selected = 0;
+                break;
+            case END:
+                selected = files.size() - 1;
+                break;
+            case ENTER:
+                if(!files.isEmpty()) {
+                    onSelect.accept(selected);
+                }
+                return;
+            default:
+                return;
+        }
+        selected = Math.max(0, Math.min(selected, files.size() - 1));
+        scrollToSelected();
+    }
+
+    /**
+     * Returns the distance between the tops of two rows
+     *
+     * @return the distance in pixels
+     */
+
+    private double rowPitch() {
+        return PREVIEW_SIZE + LABEL_HEIGHT + CELL_GAP;
+    }
+
+    /**
+     * Scrolls just far enough for the selected level to be in view
+     */
+
+    private void scrollToSelected() {
+        double top = (selected / columns) * rowPitch();
+        if(top < scroll) {
+            scroll = top;
+        }
+        else if(top + rowPitch() + CELL_GAP > scroll + height) {
+            scroll = top + rowPitch() + CELL_GAP - height;
+        }
+        layoutCells();
+    }
+
+    /**
+     * Places the cells for the current scroll position, giving a cell a new
+     * level only where the level in its place changed
+     */
+
+    private void layoutCells() {
+        double columnPitch = PREVIEW_SIZE + CELL_GAP;
+        columns = Math.max(1, (int) ((width - CELL_GAP) / columnPitch));
+        int rowsInView = (int) Math.ceil(height / rowPitch()) + 1;
+
+        // cells for every place that can be seen, created once
+        int needed = columns * rowsInView;
+        if(cells.size() != needed) {
+            while(cells.size() < needed) {
+                cells.add(new Cell());
+            }
+            while(cells.size() > needed) {
+                cells.remove(cells.size() - 1);
+            }
+            for(Cell cell : cells) {
+                cell.index = -1;
+            }
+            getChildren().setAll(background);
+            getChildren().addAll(cells);
+        }
+
+        int rows = (files.size() + columns - 1) / columns;
+        double maxScroll = Math.max(0, rows * rowPitch() + CELL_GAP - height);
+        scroll = Math.max(0, Math.min(scroll, maxScroll));
+
+        // centers the columns in the window
+        double left = (width - columns * columnPitch + CELL_GAP) / 2;
+        int first = (int) (scroll / rowPitch()) * columns;
+        firstVisible = first;
+        lastVisible = Math.min(files.size(), first + needed) - 1;
+        for(int index = first; index < first + needed; index++) {
+            // the same cell always shows levels a whole grid apart
+            Cell cell = cells.get(index % needed);
+            if(index >= files.size()) {
+                cell.setVisible(false);
+                cell.index = -1;
+                continue;
+            }
+            cell.setVisible(true);
+            if(cell.index != index) {
+                cell.show(index);
+            }
+            cell.setLayoutX(left + (index % columns) * columnPitch);
+            cell.setLayoutY(CELL_GAP + (index / columns) * rowPitch() -
+                    scroll);
+            cell.frame.setStroke(index == selected ? SELECTED_COLOR : null);
+        }
+    }
+
+    /**
+     * Reads and draws the preview of a level on previewLoader, unless it is
+     * already being read
+     *
+     * @param index the level
+     */
+
+    private void request(int index) {
+        if(!loading.add(index)) {
+            return;
+        }
+        String filename = files.get(index);
+        previewLoader.execute(() -> {
+                // the cell may have been scrolled away while this waited
+                int[] pixels = null;
+                if(index >= firstVisible && index <= lastVisible) {
+                    pixels = drawPreview(filename);
+                }
+                int[] preview = pixels;
+                Platform.runLater(() -> loaded(index, filename, preview));
+                });
+    }
+
+    /**
+     * Called on the FX thread with a preview read by request()
+     *
+     * @param index    the level
+     * @param filename file the preview was read from
+     * @param pixels   the preview, NO_PREVIEW, or null if it was skipped
+     */
+
+    private void loaded(int index, String filename, int[] pixels) {
+        loading.remove(index);
+        // the files may have changed since the request
+        if(index >= files.size() || !files.get(index).equals(filename)) {
+            return;
+        }
+        if(pixels != null) {
+            cache.put(index, pixels);
+        }
+        if(index < firstVisible || index > lastVisible) {
+            return;
+        }
+        Cell cell = cells.get(index % cells.size());
+        if(cell.index != index) {
+            return;
+        }
+        if(pixels == null) {
+            // skipped while out of view, but back in view now
+            request(index);
+        }
+        else {
+            cell.draw(pixels);
+        }
+    }
+
+    /**
+     * Reads a level file and draws it as GuiStreamline shows it at the
+     * start, one pixel at a time, so that a level of any size takes the same
+     * time to draw
+     *
+     * @param filename the level file
+     * @return         PREVIEW_SIZE * PREVIEW_SIZE ARGB pixels, or NO_PREVIEW
+     */
+
+    static int[] drawPreview(String filename) {
+        GameState state;
+        try {
+            state = Streamline.readState(filename);
+        } catch (IOException | RuntimeException e) {
+            return NO_PREVIEW;
+        }
+        int height = state.board.length;
+        int width = state.board[0].length;
+        double square = (double) PREVIEW_SIZE / Math.max(height, width);
+        double left = (PREVIEW_SIZE - square * width) / 2;
+        double top = (PREVIEW_SIZE - square * height) / 2;
+
+        int[] pixels = new int[PREVIEW_SIZE * PREVIEW_SIZE];
+        for(int y = 0; y < PREVIEW_SIZE; y++) {
+            double boardY = (y + HALF - top) / square;
+            int row = (int) Math.floor(boardY);
+            for(int x = 0; x < PREVIEW_SIZE; x++) {
+                double boardX = (x + HALF - left) / square;
+                int col = (int) Math.floor(boardX);
+                int pixel = BACKGROUND;
+                if(row >= 0 && row < height && col >= 0 && col < width) {
+                    // position within the square, from its center
+                    double u = boardX - col - HALF;
+                    double v = boardY - row - HALF;
+                    pixel = squarePixel(state, row, col, u, v, pixel);
+                }
+                pixels[y * PREVIEW_SIZE + x] = pixel;
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Returns the color of a point of a square of the board
+     *
+     * @param state      the level
+     * @param row        row of the square
+     * @param col        column of the square
+     * @param u          x of the point from the center, in squares
+     * @param v          y of the point from the center, in squares
+     * @param background color where nothing is drawn
+     * @return           ARGB color of the point
+     */
+
+    private static int squarePixel(GameState state, int row, int col,
+                                   double u, double v, int background) {
+        if(row == state.playerRow && col == state.playerCol) {
+            if(!inSquare(u, v, HALF_SQUARE, CORNER)) {
+                return background;
+            }
+            double border = GuiStreamline.SQUARE_FRACTION * STROKE_FRACTION;
+            return inSquare(u, v, HALF_SQUARE - border, CORNER)
+                ? PLAYER : PLAYER_STROKE;
+        }
+        if(row == state.goalRow && col == state.goalCol) {
+            return inSquare(u, v, HALF_SQUARE, CORNER) ? GOAL : background;
+        }
+        char square = state.board[row][col];
+        if(square == GameState.OBSTACLE_CHAR) {
+            return inSquare(u, v, HALF_SQUARE, CORNER) ? OBSTACLE : background;
+        }
+        if(square == GameState.TRAIL_CHAR) {
+            double radius = GuiStreamline.TRAIL_RADIUS_FRACTION;
+            return u * u + v * v <= radius * radius ? TRAIL : background;
+        }
+        return background;
+    }
+
+    /**
+     * Returns true if a point lies in a square with rounded corners around
+     * the origin
+     *
+     * @param u      x of the point
+     * @param v      y of the point
+     * @param half   half the side of the square
+     * @param corner radius of the corners
+     * @return       true if the point is inside
+     */
+
+    private static boolean inSquare(double u, double v, double half,
+                                    double corner) {
+        double dx = Math.max(Math.abs(u) - (half - corner), 0);
+        double dy = Math.max(Math.abs(v) - (half - corner), 0);
+        return Math.abs(u) <= half && Math.abs(v) <= half &&
+            dx * dx + dy * dy <= corner * corner;
+    }
+}
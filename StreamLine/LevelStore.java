@@ -0,0 +1,466 @@
+/**
+ * File: LevelStore.java
+ *
+ * Included below is a store for very large numbers of levels, such as the
+ * output of a level generator. Levels are kept bit-packed outside the Java
+ * heap, so a corpus of millions of levels adds next to nothing to the work
+ * of the garbage collector.
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * The LevelStore class appends levels to direct ByteBuffers, SEGMENT_SIZE
+ * bytes at a time, and keeps the position of every level in an index that
+ * lives in a direct buffer as well. A level is stored as its height, width,
+ * player and goal followed by two bits per square for space, trail or
+ * obstacle, so a 6 by 5 level takes 32 bytes where a GameState takes
+ * several hundred. The only objects on the heap are one small buffer object
+ * per segment.
+ *
+ * Levels can be copied back into a GameState by id, or read in place
+ * through a View, which plays moves exactly like GameState.slide() while
+ * keeping the trail it leaves in a bit set of its own. A View is reused
+ * from level to level, so running the move engine over the whole corpus
+ * allocates nothing per level.
+ *
+ * Appends must come from one thread at a time. Once appended, a level can
+ * be read from any number of threads.
+ */
+
+public class LevelStore {
+    static final String USAGE =
+        "Usage: \n" +
+        "> java LevelStore <directory>   - to load every level of the direc" +
+        "tory into a store\n" +
+        "                                  and report its size\n";
+
+    // bytes of one segment, unless a single level needs more
+    static final int SEGMENT_SIZE = 1 << 24;
+
+    // stored square codes, two bits each
+    static final int SPACE_CODE = 0;
+    static final int TRAIL_CODE = 1;
+    static final int OBSTACLE_CODE = 2;
+
+    // layout of a level: six ints, then the packed squares
+    private static final int HEIGHT = 0;
+    private static final int WIDTH = 4;
+    private static final int PLAYER_ROW = 8;
+    private static final int PLAYER_COL = 12;
+    private static final int GOAL_ROW = 16;
+    private static final int GOAL_COL = 20;
+    private static final int SQUARES = 24;
+    private static final int BITS_PER_SQUARE = 2;
+    private static final int SQUARES_PER_LONG = Long.SIZE / BITS_PER_SQUARE;
+    private static final int CODE_MASK = 3;
+
+    // index entries are the segment and the offset within it
+    private static final int SEGMENT_SHIFT = 32;
+    private static final long OFFSET_MASK = 0xffffffffL;
+    private static final int INITIAL_INDEX = 1024;
+
+    // report statements
+    private static final String UNREADABLE = "Skipping unreadable level %s";
+    private static final String SUMMARY = "Stored %d levels in %d bytes " +
+        "(%d allocated off the heap in %d segments) in %d ms";
+
+    private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+    private LongBuffer index = ByteBuffer.allocateDirect(
+            INITIAL_INDEX * Long.BYTES).order(ByteOrder.nativeOrder())
+        .asLongBuffer();
+    private int size;
+
+    /**
+     * Returns the number of bytes a level of the given size takes
+     *
+     * @param int height height of the level
+     * @param int width width of the level
+     * @return int bytes of the level
+     */
+
+    static int recordSize(int height, int width) {
+        long squares = (long) height * width;
+        long words = (squares + SQUARES_PER_LONG - 1) / SQUARES_PER_LONG;
+        return Math.toIntExact(SQUARES + words * Long.BYTES);
+    }
+
+    /**
+     * Adds a level to the store
+     *
+     * @param GameState state level to add, as it is
+     * @return int id of the level
+     */
+
+    synchronized int append(GameState state) {
+        int height = state.board.length;
+        int width = state.board[0].length;
+        int bytes = recordSize(height, width);
+
+        // levels never span segments
+        ByteBuffer segment = segments.isEmpty() ? null
+            : segments.get(segments.size() - 1);
+        if(segment == null || segment.remaining() < bytes) {
+            segment = ByteBuffer.allocateDirect(Math.max(SEGMENT_SIZE,
+                        bytes)).order(ByteOrder.nativeOrder());
+            segments.add(segment);
+        }
+        int offset = segment.position();
+
+        segment.putInt(offset + HEIGHT, height);
+        segment.putInt(offset + WIDTH, width);
+        segment.putInt(offset + PLAYER_ROW, state.playerRow);
+        segment.putInt(offset + PLAYER_COL, state.playerCol);
+        segment.putInt(offset + GOAL_ROW, state.goalRow);
+        segment.putInt(offset + GOAL_COL, state.goalCol);
+        long word = 0;
+        int square = 0;
+        int wordOffset = offset + SQUARES;
+        for(int i = 0; i < height; i++) {
+            for(int j = 0; j < width; j++) {
+                word |= (long) code(state.board[i][j])
+                    << (square % SQUARES_PER_LONG * BITS_PER_SQUARE);
+                square++;
+                if(square % SQUARES_PER_LONG == 0) {
+                    segment.putLong(wordOffset, word);
+                    wordOffset += Long.BYTES;
+                    word = 0;
+                }
+            }
+        }
+        if(square % SQUARES_PER_LONG != 0) {
+            segment.putLong(wordOffset, word);
+        }
+        segment.position(offset + bytes);
+
+        if(size == index.capacity()) {
+            LongBuffer larger = ByteBuffer.allocateDirect(
+                    2 * size * Long.BYTES).order(ByteOrder.nativeOrder())
+                .asLongBuffer();
+            index.position(0);
+            larger.put(index);
+            index = larger;
+        }
+        index.put(size, ((long) (segments.size() - 1) << SEGMENT_SHIFT)
+                | offset);
+        return size++;
+    }
+
+    /**
+     * Returns the stored code of a board character. Anything but space and
+     * trail stops the player, so it is stored as an obstacle.
+     *
+     * @param char square board character
+     * @return int SPACE_CODE, TRAIL_CODE or OBSTACLE_CODE
+     */
+
+    private static int code(char square) {
+        if(square == GameState.SPACE_CHAR) {
+            return SPACE_CODE;
+        }
+        return square == GameState.TRAIL_CHAR ? TRAIL_CODE : OBSTACLE_CODE;
+    }
+
+    /**
+     * Returns the number of levels in the store
+     *
+     * @return int number of levels
+     */
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes held off the heap, the index included
+     *
+     * @return long bytes allocated
+     */
+
+    synchronized long getOffHeapBytes() {
+        long bytes = (long) index.capacity() * Long.BYTES;
+        for(ByteBuffer segment : segments) {
+            bytes += segment.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the number of bytes taken by the stored levels
+     *
+     * @return long bytes stored
+     */
+
+    synchronized long getStoredBytes() {
+        long bytes = 0;
+        for(ByteBuffer segment : segments) {
+            bytes += segment.position();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the number of segments allocated
+     *
+     * @return int segments
+     */
+
+    synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Finds the segment holding a level
+     *
+     * @param int id id of the level
+     * @return long index entry of the level
+     */
+
+    private synchronized long entry(int id) {
+        if(id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("level " + id);
+        }
+        return index.get(id);
+    }
+
+    /**
+     * Returns the segment of an index entry
+     *
+     * @param long entry index entry
+     * @return ByteBuffer segment of the level
+     */
+
+    private synchronized ByteBuffer segment(long entry) {
+        return segments.get((int) (entry >>> SEGMENT_SHIFT));
+    }
+
+    /**
+     * Copies a level into a new GameState
+     *
+     * @param int id id of the level
+     * @return GameState the level, on the heap
+     */
+
+    GameState get(int id) {
+        View view = new View();
+        view.load(id);
+        GameState state = new GameState(view.height, view.width,
+                view.playerRow, view.playerCol, view.goalRow, view.goalCol);
+        for(int i = 0; i < view.height; i++) {
+            for(int j = 0; j < view.width; j++) {
+                state.board[i][j] = view.get(i, j);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Returns a view for reading and playing stored levels in place
+     *
+     * @return View view with no level loaded
+     */
+
+    View newView() {
+        return new View();
+    }
+
+    /**
+     * The View class reads one stored level at a time without copying it.
+     * Obstacles and the trail the level was stored with are read from the
+     * store; trail added by moves goes into a bit set owned by the view,
+     * which is cleared and reused when the next level is loaded.
+     */
+
+    class View {
+        private ByteBuffer segment;
+        private int base;
+
+        int height;
+        int width;
+        int playerRow;
+        int playerCol;
+        int goalRow;
+        int goalCol;
+        boolean levelPassed;
+
+        // trail left by moves, one bit per square
+        private long[] trail = new long[0];
+
+        /**
+         * Points the view at a stored level, at its start
+         *
+         * @param int id id of the level
+         */
+
+        void load(int id) {
+            long entry = entry(id);
+            this.segment = segment(entry);
+            this.base = (int) (entry & OFFSET_MASK);
+            this.height = segment.getInt(base + HEIGHT);
+            this.width = segment.getInt(base + WIDTH);
+            this.playerRow = segment.getInt(base + PLAYER_ROW);
+            this.playerCol = segment.getInt(base + PLAYER_COL);
+            this.goalRow = segment.getInt(base + GOAL_ROW);
+            this.goalCol = segment.getInt(base + GOAL_COL);
+            this.levelPassed = false;
+
+            int words = (height * width + Long.SIZE - 1) / Long.SIZE;
+            if(trail.length < words) {
+                trail = new long[words];
+            }
+            else {
+                Arrays.fill(trail, 0, words, 0);
+            }
+        }
+
+        /**
+         * Returns the stored code of a square
+         *
+         * @param int square square index, row * width + col
+         * @return int stored code
+         */
+
+        private int storedCode(int square) {
+            long word = segment.getLong(base + SQUARES
+                    + square / SQUARES_PER_LONG * Long.BYTES);
+            return (int) (word >>> (square % SQUARES_PER_LONG
+                        * BITS_PER_SQUARE)) & CODE_MASK;
+        }
+
+        /**
+         * Returns what a square holds, using the characters of GameState
+         *
+         * @param int row row of the square
+         * @param int col column of the square
+         * @return char OBSTACLE_CHAR, TRAIL_CHAR or SPACE_CHAR
+         */
+
+        char get(int row, int col) {
+            int square = row * width + col;
+            if((trail[square >>> 6] & (1L << square)) != 0) {
+                return GameState.TRAIL_CHAR;
+            }
+            int code = storedCode(square);
+            if(code == SPACE_CODE) {
+                return GameState.SPACE_CHAR;
+            }
+            return code == TRAIL_CODE ? GameState.TRAIL_CHAR
+                : GameState.OBSTACLE_CHAR;
+        }
+
+        /**
+         * Sets or clears the trail added on a square
+         *
+         * @param int row row of the square
+         * @param int col column of the square
+         * @param boolean on true to add trail
+         */
+
+        private void setTrail(int row, int col, boolean on) {
+            int square = row * width + col;
+            if(on) {
+                trail[square >>> 6] |= 1L << square;
+            }
+            else {
+                trail[square >>> 6] &= ~(1L << square);
+            }
+        }
+
+        /**
+         * Moves like GameState.slide()
+         *
+         * @param Direction direction the direction to move
+         * @return int number of squares moved, 0 if the player did not move
+         */
+
+        int slide(Direction direction) {
+            int rowStep = direction.getRowStep();
+            int colStep = direction.getColStep();
+            int steps = 0;
+            while(true) {
+                int nextRow = playerRow + rowStep;
+                int nextCol = playerCol + colStep;
+                // if there is an edge
+                if(nextRow < 0 || nextRow >= height || nextCol < 0 ||
+                        nextCol >= width) {
+                    return steps;
+                }
+                // if there is a goal
+                if(nextRow == goalRow && nextCol == goalCol) {
+                    this.levelPassed = true;
+                    setTrail(playerRow, playerCol, true);
+                    this.playerRow = nextRow;
+                    this.playerCol = nextCol;
+                    return steps + 1;
+                }
+                // if there is an obstacle or trail
+                if(get(nextRow, nextCol) != GameState.SPACE_CHAR) {
+                    return steps;
+                }
+                // leaves a trail on its path
+                setTrail(playerRow, playerCol, true);
+                this.playerRow = nextRow;
+                this.playerCol = nextCol;
+                steps++;
+            }
+        }
+
+        /**
+         * Takes back a slide() like GameState.unslide()
+         *
+         * @param Direction direction the direction of the slide
+         * @param int steps number of squares the slide went
+         * @param char startChar what the starting square held before
+         * @param boolean wasPassed levelPassed before the slide
+         */
+
+        void unslide(Direction direction, int steps, char startChar,
+                     boolean wasPassed) {
+            for(int i = 0; i < steps; i++) {
+                this.playerRow -= direction.getRowStep();
+                this.playerCol -= direction.getColStep();
+                setTrail(playerRow, playerCol, false);
+            }
+            // stored trail is still there, only added trail is restored
+            if(steps > 0 && startChar == GameState.TRAIL_CHAR &&
+                    storedCode(playerRow * width + playerCol) != TRAIL_CODE) {
+                setTrail(playerRow, playerCol, true);
+            }
+            this.levelPassed = wasPassed;
+        }
+    }
+
+    /**
+     * Loads every level of the directory given on the command line into a
+     * store and reports its size.
+     */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.print(USAGE);
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        LevelStore store = new LevelStore();
+        List<Path> files;
+        try(Stream<Path> listing = Files.list(Paths.get(args[0]))) {
+            files = listing.filter(Files::isRegularFile).sorted()
+                .collect(Collectors.toList());
+        }
+        for(Path file : files) {
+            try {
+                store.append(Streamline.readState(file.toString()));
+            } catch (IOException | RuntimeException e) {
+                System.err.println(String.format(UNREADABLE, file));
+            }
+        }
+        System.out.println(String.format(SUMMARY, store.size(),
+                    store.getStoredBytes(), store.getOffHeapBytes(),
+                    store.getSegmentCount(),
+                    System.currentTimeMillis() - startTime));
+    }
+}
@@ -0,0 +1,333 @@
+/**
+ * File: LevelSymmetry.java
+ *
+ * Included below are methods that fingerprint a level and find its canonical
+ * form under the 8 symmetries of a square: the 4 rotations and their mirror
+ * images. Two levels that are rotations or reflections of each other have the
+ * same canonical fingerprint, which GameState.equals() cannot tell.
+ */
+
+/**
+ * The LevelSymmetry class numbers the 8 symmetries 0 to 7. Symmetry s first
+ * transposes the board if bit 2 of s is set, then reverses the order of the
+ * rows if bit 1 is set, then reverses every row if bit 0 is set. Transposing
+ * swaps height and width, so every symmetry is valid for non-square boards
+ * too; a single rotateClockwise() is symmetry 5.
+ *
+ * A fingerprint is the mixed sum of one 64 bit key per non-empty square plus
+ * keys for the dimensions, player and goal. The sum does not depend on the
+ * order squares are visited in, so the fingerprints of all 8 symmetries are
+ * gathered in one row by row pass over the unmoved board.
+ */
+
+public class LevelSymmetry {
+
+    // the untransformed board
+    static final int IDENTITY = 0;
+
+    // number of symmetries of a square
+    static final int SYMMETRY_COUNT = 8;
+
+    // bits of a symmetry number
+    private static final int TRANSPOSE = 4;
+    private static final int FLIP_ROWS = 2;
+    private static final int FLIP_COLS = 1;
+
+    // bit positions used to pack a square into a key
+    private static final int CHAR_SHIFT = 56;
+    private static final int ROW_SHIFT = 32;
+    private static final long COL_MASK = 0xFFFFFFFFL;
+
+    // stands in for the board contents when keying the dimensions
+    private static final char DIMENSION_CHAR = '\0';
+
+    // constants of the splitmix64 finalizer
+    private static final long MIX_MULTIPLIER_1 = 0xBF58476D1CE4E5B9L;
+    private static final long MIX_MULTIPLIER_2 = 0x94D049BB133111EBL;
+    private static final int MIX_SHIFT_1 = 30;
+    private static final int MIX_SHIFT_2 = 27;
+    private static final int MIX_SHIFT_3 = 31;
+
+    /**
+     * Scrambles the bits of the given value so that nearby inputs give
+     * unrelated outputs (the splitmix64 finalizer).
+     *
+     * @param long value value to scramble
+     * @return long scrambled value
+     */
+
+    static long mix(long value) {
+        value = (value ^ (value >>> MIX_SHIFT_1)) * MIX_MULTIPLIER_1;
+        value = (value ^ (value >>> MIX_SHIFT_2)) * MIX_MULTIPLIER_2;
+        return value ^ (value >>> MIX_SHIFT_3);
+    }
+
+    /**
+     * Returns the key of a single square holding the given character
+     *
+     * @param int row row of the square
+     * @param int col column of the square
+     * @param char square character at the square
+     * @return long key of the square
+     */
+
+    static long squareKey(int row, int col, char square) {
+        return mix(((long) square << CHAR_SHIFT) | ((long) row << ROW_SHIFT)
+                | (col & COL_MASK));
+    }
+
+    /**
+     * Combines the sum of the square keys of a board with its dimensions,
+     * player and goal into a fingerprint.
+     *
+     * @param long squareSum sum of the keys of all non-empty squares
+     * @param int height height of the board
+     * @param int width width of the board
+     * @param int playerRow row of the player
+     * @param int playerCol column of the player
+     * @param int goalRow row of the goal
+     * @param int goalCol column of the goal
+     * @return long fingerprint
+     */
+
+    static long finish(long squareSum, int height, int width, int playerRow,
+                       int playerCol, int goalRow, int goalCol) {
+        long sum = squareSum;
+        sum += squareKey(height, width, DIMENSION_CHAR);
+        sum += squareKey(playerRow, playerCol, GameState.CURRENT_CHAR);
+        sum += squareKey(goalRow, goalCol, GameState.GOAL_CHAR);
+        return mix(sum);
+    }
+
+    /**
+     * Returns the fingerprint of the given state as it is, without applying
+     * any symmetry.
+     *
+     * @param GameState state state to fingerprint
+     * @return long fingerprint
+     */
+
+    static long fingerprint(GameState state) {
+        return finish(squareSum(state), state.board.length,
+                state.board[0].length, state.playerRow, state.playerCol,
+                state.goalRow, state.goalCol);
+    }
+
+    /**
+     * Returns the sum of the square keys of a board, as used by finish(),
+     * for searches that keep it up to date move by move
+     *
+     * @param GameState state state to sum
+     * @return long sum of the keys of all non-empty squares
+     */
+
+    static long squareSum(GameState state) {
+        char[][] board = state.board;
+        long sum = 0;
+        for(int i = 0; i < board.length; i++) {
+            for(int j = 0; j < board[i].length; j++) {
+                if(board[i][j] != GameState.SPACE_CHAR) {
+                    sum += squareKey(i, j, board[i][j]);
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the fingerprints of the given state under all 8 symmetries,
+     * indexed by symmetry number, from a single pass over the board.
+     *
+     * @param GameState state state to fingerprint
+     * @return long[] fingerprint of every symmetry
+     */
+
+    static long[] fingerprints(GameState state) {
+        char[][] board = state.board;
+        int height = board.length;
+        int width = board[0].length;
+        long[] sums = new long[SYMMETRY_COUNT];
+        int[] mapped = new int[2];
+
+        for(int i = 0; i < height; i++) {
+            for(int j = 0; j < width; j++) {
+                char square = board[i][j];
+                if(square == GameState.SPACE_CHAR) {
+                    continue;
+                }
+                for(int s = 0; s < SYMMETRY_COUNT; s++) {
+                    map(s, height, width, i, j, mapped);
+                    sums[s] += squareKey(mapped[0], mapped[1], square);
+                }
+            }
+        }
+
+        long[] fingerprints = new long[SYMMETRY_COUNT];
+        int[] player = new int[2];
+        int[] goal = new int[2];
+        for(int s = 0; s < SYMMETRY_COUNT; s++) {
+            map(s, height, width, state.playerRow, state.playerCol, player);
+            map(s, height, width, state.goalRow, state.goalCol, goal);
+            boolean transposed = (s & TRANSPOSE) != 0;
+            fingerprints[s] = finish(sums[s],
+                    transposed ? width : height, transposed ? height : width,
+                    player[0], player[1], goal[0], goal[1]);
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Returns the symmetry that takes the given state to its canonical form,
+     * the one with the smallest fingerprint. Ties only happen when the
+     * level is itself symmetric, in which case the tied forms are identical.
+     *
+     * @param GameState state state to canonicalize
+     * @return int symmetry number
+     */
+
+    static int canonicalSymmetry(GameState state) {
+        long[] fingerprints = fingerprints(state);
+        int best = IDENTITY;
+        for(int s = 1; s < SYMMETRY_COUNT; s++) {
+            if(fingerprints[s] < fingerprints[best]) {
+                best = s;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns a fingerprint shared by the given state and all of its
+     * rotations and reflections.
+     *
+     * @param GameState state state to fingerprint
+     * @return long canonical fingerprint
+     */
+
+    static long canonicalFingerprint(GameState state) {
+        long[] fingerprints = fingerprints(state);
+        long best = fingerprints[IDENTITY];
+        for(int s = 1; s < SYMMETRY_COUNT; s++) {
+            best = Math.min(best, fingerprints[s]);
+        }
+        return best;
+    }
+
+    /**
+     * Returns a copy of the given state in canonical form
+     *
+     * @param GameState state state to canonicalize
+     * @return GameState canonical copy
+     */
+
+    static GameState canonicalForm(GameState state) {
+        GameState canonical = new GameState(state);
+        transform(canonical, canonicalSymmetry(state));
+        return canonical;
+    }
+
+    /**
+     * Maps a square of a height by width board through the given symmetry
+     *
+     * @param int symmetry symmetry number
+     * @param int height height of the board before the symmetry
+     * @param int width width of the board before the symmetry
+     * @param int row row of the square
+     * @param int col column of the square
+     * @param int[] mapped receives the new row at 0 and new column at 1
+     */
+
+    static void map(int symmetry, int height, int width, int row, int col,
+                    int[] mapped) {
+        if((symmetry & TRANSPOSE) != 0) {
+            int oldRow = row;
+            row = col;
+            col = oldRow;
+            int oldHeight = height;
+            height = width;
+            width = oldHeight;
+        }
+        if((symmetry & FLIP_ROWS) != 0) {
+            row = height - 1 - row;
+        }
+        if((symmetry & FLIP_COLS) != 0) {
+            col = width - 1 - col;
+        }
+        mapped[0] = row;
+        mapped[1] = col;
+    }
+
+    /**
+     * Applies the given symmetry to the state. Square boards are transposed
+     * in place and flips only swap existing rows and characters, so only a
+     * transposed non-square board needs new rows.
+     *
+     * @param GameState state state to transform
+     * @param int symmetry symmetry number
+     */
+
+    static void transform(GameState state, int symmetry) {
+        int[] mapped = new int[2];
+        int height = state.board.length;
+        int width = state.board[0].length;
+        map(symmetry, height, width, state.playerRow, state.playerCol, mapped);
+        state.playerRow = mapped[0];
+        state.playerCol = mapped[1];
+        map(symmetry, height, width, state.goalRow, state.goalCol, mapped);
+        state.goalRow = mapped[0];
+        state.goalCol = mapped[1];
+
+        if((symmetry & TRANSPOSE) != 0) {
+            transpose(state);
+        }
+        char[][] board = state.board;
+        if((symmetry & FLIP_ROWS) != 0) {
+            // reverses the order of the rows
+            for(int i = 0, k = board.length - 1; i < k; i++, k--) {
+                char[] row = board[i];
+                board[i] = board[k];
+                board[k] = row;
+            }
+        }
+        if((symmetry & FLIP_COLS) != 0) {
+            // reverses every row
+            for(char[] row : board) {
+                for(int j = 0, k = row.length - 1; j < k; j++, k--) {
+                    char square = row[j];
+                    row[j] = row[k];
+                    row[k] = square;
+                }
+            }
+        }
+    }
+
+    /**
+     * Transposes the board of the given state, in place when it is square.
+     * Player and goal are left to the caller.
+     *
+     * @param GameState state state to transpose
+     */
+
+    private static void transpose(GameState state) {
+        char[][] board = state.board;
+        int height = board.length;
+        int width = board[0].length;
+        if(height == width) {
+            for(int i = 0; i < height; i++) {
+                for(int j = i + 1; j < width; j++) {
+                    char square = board[i][j];
+                    board[i][j] = board[j][i];
+                    board[j][i] = square;
+                }
+            }
+            return;
+        }
+        char[][] transposed = new char[width][height];
+        for(int i = 0; i < height; i++) {
+            for(int j = 0; j < width; j++) {
+                transposed[j][i] = board[i][j];
+            }
+        }
+        state.board = transposed;
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * File: LevelWatcher.java
+ *
+ * Included below is a watcher for a directory of levels, so that levels can
+ * be edited while the game is running and picked up without a restart.
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * The LevelWatcher class waits on a WatchService for files of one directory
+ * to be created, modified or deleted. Editors tend to write a file in
+ * several steps, so events are gathered until the directory has been quiet
+ * for DEBOUNCE_MILLIS and then handed over as a single set of changed files.
+ * Only the files named by the events are reported; nothing else in the
+ * directory is looked at again. The watcher runs on a daemon thread of its
+ * own and calls back on that thread.
+ */
+
+public class LevelWatcher implements Runnable {
+
+    // quiet time that ends a burst of events
+    static final long DEBOUNCE_MILLIS = 100;
+
+    private final Path directory;
+    private final WatchService watchService;
+    private final Consumer<Set<Path>> onChange;
+
+    /**
+     * Starts watching the given directory
+     *
+     * @param Path directory directory of level files
+     * @param Consumer<Set<Path>> onChange called with the files that were
+     *                            created, modified or deleted in a burst
+     */
+
+    public LevelWatcher(Path directory, Consumer<Set<Path>> onChange)
+        throws IOException {
+        this.directory = directory;
+        this.onChange = onChange;
+        this.watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    /**
+     * Watches the given directory on a new daemon thread
+     *
+     * @param Path directory directory of level files
+     * @param Consumer<Set<Path>> onChange called with each burst of changes
+     * @return LevelWatcher the running watcher
+     */
+
+    static LevelWatcher start(Path directory, Consumer<Set<Path>> onChange)
+        throws IOException {
+        LevelWatcher watcher = new LevelWatcher(directory, onChange);
+        Thread thread = new Thread(watcher, "level-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return watcher;
+    }
+
+    /**
+     * Waits for bursts of events and reports them until the watcher is
+     * closed or the thread is interrupted.
+     */
+
+    @Override
+    public void run() {
+        try {
+            while(true) {
+                Set<Path> changed = new TreeSet<Path>();
+                collect(watchService.take(), changed);
+                WatchKey key;
+                while((key = watchService.poll(DEBOUNCE_MILLIS,
+                                TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, changed);
+                }
+                if(!changed.isEmpty()) {
+                    onChange.accept(changed);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            return;
+        }
+    }
+
+    /**
+     * Adds the files named by the events of a key and readies the key for
+     * more events
+     *
+     * @param WatchKey key key with pending events
+     * @param Set<Path> changed files changed so far in this burst
+     */
+
+    private void collect(WatchKey key, Set<Path> changed) {
+        for(WatchEvent<?> event : key.pollEvents()) {
+            // events lost to an overflow can not be named
+            if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                continue;
+            }
+            changed.add(directory.resolve((Path) event.context()));
+        }
+        key.reset();
+    }
+
+    /**
+     * Stops watching
+     */
+
+    void close() throws IOException {
+        watchService.close();
+    }
+}
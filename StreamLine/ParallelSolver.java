@@ -0,0 +1,576 @@
+/**
+ * File: ParallelSolver.java
+ *
+ * Included below is a solver that searches the moves of a level on all
+ * cores at once. It answers whether a level can be solved and with which
+ * moves, without promising the shortest solution.
+ */
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * The ParallelSolver class runs a depth-first search split into tasks of a
+ * ForkJoinPool. Each task slides and unslides its own GameState and hands a
+ * copy of a child state to a new task whenever its worker has no queued work
+ * to spare, so idle workers always find something to steal. All tasks share
+ * one VisitedSet of state fingerprints and only expand a state if they are
+ * the first to add it. Once any task reaches the goal every task stops at
+ * its next state. States from which the goal can not be reached even by a
+ * rook that ignores trail are not expanded at all.
+ *
+ * The visited set starts small and doubles whenever it is half full, up to
+ * a capacity chosen from the state limit, so a small level never pays for
+ * the table a large one needs. Every state added counts against the state
+ * limit, which is at most half that capacity, and the search gives up as
+ * soon as a task adds a state past it. That keeps probe sequences short
+ * however many states the set holds, and the set never fills up.
+ */
+
+public class ParallelSolver {
+    static final String USAGE =
+        "Usage: \n" +
+        "> java ParallelSolver <filename>                     - to solve on " +
+        "all cores and on one\n" +
+        "                                                       and report t" +
+        "he speedup\n" +
+        "> java ParallelSolver <filename> <threads> <states>  - to use the g" +
+        "iven threads and\n" +
+        "                                                       give up afte" +
+        "r the given states\n";
+
+    // states the visited set holds before the search gives up
+    static final int DEFAULT_STATE_LIMIT = 1 << 22;
+
+    // all directions in ordinal order
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    // queued tasks a worker keeps before it stops handing out work
+    private static final int SURPLUS_LIMIT = 2;
+
+    // initial length of the path arrays
+    private static final int INITIAL_DEPTH = 64;
+
+    // timed runs of each thread count when reporting the speedup, after
+    // one run of each that only warms up the JIT, and the time they run
+    // for at least so that small levels are not timed by noise
+    private static final int TIMED_RUNS = 3;
+    private static final long TIMED_NANOS = 1000000000L;
+
+    // nanoseconds in a millisecond
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    // report statements
+    private static final String SOLVED = "solved in %d moves: %s";
+    private static final String UNSOLVABLE = "no solution";
+    private static final String TRUNCATED =
+        "gave up after %d states without a solution";
+    private static final String STATISTICS =
+        "%d threads, %d states in %.1f ms";
+    private static final String SPEEDUP = "speedup with %d threads: %.2fx";
+
+    /**
+     * The VisitedSet class is a lock-free set of 64-bit fingerprints kept in
+     * an open addressing table with linear probing. A slot goes from empty
+     * to its fingerprint with a single compare and set, and fingerprints are
+     * never removed, so readers need no locks either. Once more fingerprints
+     * than its limit were added the set is full, and a probe that finds no
+     * free slot also leaves it full instead of searching forever.
+     *
+     * When the table is half full, the thread that filled it links a table
+     * twice as large behind it and copies the fingerprints over, while the
+     * other threads go on adding. Each empty slot of the old table is closed
+     * with MOVED as it is copied, and an add whose probe meets a closed slot
+     * goes on in the next table. Since a probe stops at the first slot that
+     * is empty or closed, a fingerprint is never in both tables as two
+     * different adds.
+     */
+
+    static class VisitedSet {
+        // marks an empty slot; the fingerprints 0 and 1 are stored as 2
+        private static final long EMPTY = 0;
+
+        // marks an empty slot of a table that has been copied to the next
+        private static final long MOVED = 1;
+
+        // slots of the first table
+        private static final int INITIAL_CAPACITY = 1 << 16;
+
+        // outcomes of Table.add()
+        private static final int ADDED = 0;
+        private static final int PRESENT = 1;
+        private static final int FORWARDED = 2;
+        private static final int NO_ROOM = 3;
+
+        /**
+         * The Table class is one table of the set, which counts every
+         * fingerprint put in it
+         */
+
+        private static class Table {
+            final AtomicLongArray slots;
+            final int mask;
+            final AtomicInteger size = new AtomicInteger();
+
+            // the table this one is copied to once it grew, or null
+            volatile Table next;
+
+            /**
+             * Creates an empty table
+             *
+             * @param int capacity number of slots, a power of two
+             */
+
+            Table(int capacity) {
+                this.slots = new AtomicLongArray(capacity);
+                this.mask = capacity - 1;
+            }
+
+            /**
+             * Puts a fingerprint in the first empty slot of its probe
+             * sequence unless it comes across it first
+             *
+             * @param long fingerprint fingerprint to add
+             * @return int ADDED, PRESENT, FORWARDED if the probe met a
+             *             closed slot, or NO_ROOM
+             */
+
+            int add(long fingerprint) {
+                int slot = (int) LevelSymmetry.mix(fingerprint) & mask;
+                int probes = 0;
+                while(probes <= mask) {
+                    long current = slots.get(slot);
+                    if(current == fingerprint) {
+                        return PRESENT;
+                    }
+                    if(current == MOVED) {
+                        return FORWARDED;
+                    }
+                    if(current == EMPTY) {
+                        if(slots.compareAndSet(slot, EMPTY, fingerprint)) {
+                            size.incrementAndGet();
+                            return ADDED;
+                        }
+                        // another thread took the slot; looks at it again
+                        continue;
+                    }
+                    slot = (slot + 1) & mask;
+                    probes++;
+                }
+                return NO_ROOM;
+            }
+        }
+
+        private final int capacity;
+        private final int limit;
+        private volatile Table current;
+        private volatile boolean full;
+
+        /**
+         * Creates a set for the given number of fingerprints, which grows to
+         * leave room to spare so that probe sequences stay short
+         *
+         * @param int limit fingerprints the set is meant to hold
+         */
+
+        VisitedSet(int limit) {
+            this.capacity = Integer.highestOneBit(Math.max(limit, 1)) << 2;
+            this.limit = Math.min(Math.max(limit, 1), capacity / 2);
+            this.current = new Table(Math.min(capacity, INITIAL_CAPACITY));
+        }
+
+        /**
+         * Adds a fingerprint
+         *
+         * @param long fingerprint fingerprint to add
+         * @return boolean true if it was not in the set before, false if it
+         *                 was or if there was no free slot left for it
+         */
+
+        boolean add(long fingerprint) {
+            if(fingerprint == EMPTY || fingerprint == MOVED) {
+                fingerprint = MOVED + 1;
+            }
+            Table table = current;
+            while(true) {
+                int outcome = table.add(fingerprint);
+                if(outcome == FORWARDED) {
+                    // the slot was closed after the next table was linked
+                    table = table.next;
+                    continue;
+                }
+                if(outcome == NO_ROOM) {
+                    full = true;
+                }
+                if(outcome != ADDED) {
+                    return false;
+                }
+                int size = table.size.get();
+                if(size > limit) {
+                    full = true;
+                }
+                else if(size > (table.mask + 1) / 2) {
+                    grow(table);
+                }
+                return true;
+            }
+        }
+
+        /**
+         * Links a table twice as large behind the given one and copies its
+         * fingerprints there, unless that was done already or the table is
+         * as large as the set gets
+         *
+         * @param Table table table that is half full
+         */
+
+        private synchronized void grow(Table table) {
+            if(table.next != null || table.mask + 1 >= capacity) {
+                return;
+            }
+            Table next = new Table(2 * (table.mask + 1));
+            table.next = next;
+            for(int slot = 0; slot <= table.mask; slot++) {
+                // closes an empty slot, or copies what was put in it
+                long fingerprint;
+                do {
+                    fingerprint = table.slots.get(slot);
+                } while(fingerprint == EMPTY &&
+                        !table.slots.compareAndSet(slot, EMPTY, MOVED));
+                if(fingerprint != EMPTY) {
+                    next.add(fingerprint);
+                }
+            }
+            current = next;
+        }
+
+        /**
+         * Returns true once more fingerprints than the limit were added, or
+         * one could not be added for lack of room
+         *
+         * @return boolean true if the search should give up
+         */
+
+        boolean isFull() {
+            return full;
+        }
+
+        /**
+         * Returns the number of fingerprints added
+         *
+         * @return long size of the set
+         */
+
+        long size() {
+            return current.size.get();
+        }
+
+        /**
+         * Returns the number of slots of the current table
+         *
+         * @return int capacity of the set
+         */
+
+        int capacity() {
+            return current.mask + 1;
+        }
+    }
+
+    /**
+     * The Result class holds the outcome of a search
+     */
+
+    static class Result {
+        boolean solved;
+
+        // true if the state limit was hit before the search finished
+        boolean truncated;
+
+        // a solution, not necessarily the shortest
+        Direction[] moves;
+
+        long states;
+        int threads;
+        long nanos;
+
+        @Override
+        public String toString() {
+            String outcome;
+            if(solved) {
+                outcome = String.format(SOLVED, moves.length,
+                        Arrays.toString(moves).toLowerCase());
+            }
+            else if(truncated) {
+                outcome = String.format(TRUNCATED, states);
+            }
+            else {
+                outcome = UNSOLVABLE;
+            }
+            return outcome + "\n" + String.format(Locale.ROOT, STATISTICS,
+                    threads, states, nanos / NANOS_PER_MILLI);
+        }
+    }
+
+    // shared by all tasks of a search
+    private final VisitedSet visited;
+    private final int[] rookDistances;
+    private final int width;
+    private final AtomicReference<Direction[]> solution =
+        new AtomicReference<Direction[]>();
+    private volatile boolean stopped;
+    private volatile boolean truncated;
+
+    /**
+     * Prepares a search of the given level
+     *
+     * @param GameState start start of the level
+     * @param int stateLimit states to visit before giving up
+     */
+
+    private ParallelSolver(GameState start, int stateLimit) {
+        this.visited = new VisitedSet(stateLimit);
+        this.rookDistances = IdaSolver.rookDistances(start);
+        this.width = start.board[0].length;
+    }
+
+    /**
+     * The SearchTask class searches below one state with a state of its own
+     */
+
+    class SearchTask extends RecursiveAction {
+        // tasks are never serialized, but RecursiveAction is Serializable
+        private static final long serialVersionUID = 1L;
+
+        private final GameState state;
+        private long squareSum;
+
+        // moves from the start of the level to the state of this task
+        private final Direction[] prefix;
+
+        // moves below the state of this task
+        private Direction[] moves = new Direction[INITIAL_DEPTH];
+        private int[] steps = new int[INITIAL_DEPTH];
+        private char[] startChars = new char[INITIAL_DEPTH];
+        private long[] squareSums = new long[INITIAL_DEPTH];
+        private int[] tried = new int[INITIAL_DEPTH];
+
+        // tasks handed out, joined before this one ends
+        private final List<SearchTask> forked = new ArrayList<SearchTask>();
+
+        /**
+         * Prepares a task for a state already added to the visited set
+         *
+         * @param GameState state state to search below, owned by the task
+         * @param long squareSum sum of the square keys of the state
+         * @param Direction[] prefix moves that led to the state
+         */
+
+        SearchTask(GameState state, long squareSum, Direction[] prefix) {
+            this.state = state;
+            this.squareSum = squareSum;
+            this.prefix = prefix;
+        }
+
+        @Override
+        protected void compute() {
+            search();
+            for(SearchTask task : forked) {
+                task.join();
+            }
+        }
+
+        /**
+         * Searches below the state of this task, depth first
+         */
+
+        private void search() {
+            int depth = 0;
+            tried[0] = 0;
+            while(depth >= 0 && !stopped) {
+                // every move from this state was tried, back to its parent
+                if(tried[depth] == DIRECTIONS.length) {
+                    depth--;
+                    if(depth >= 0) {
+                        takeBack(depth);
+                    }
+                    continue;
+                }
+
+                Direction direction = DIRECTIONS[tried[depth]++];
+                int startRow = state.playerRow;
+                int startCol = state.playerCol;
+                char startChar = state.board[startRow][startCol];
+                int moved = state.slide(direction);
+                if(moved == 0) {
+                    continue;
+                }
+                moves[depth] = direction;
+                steps[depth] = moved;
+                startChars[depth] = startChar;
+                squareSums[depth] = squareSum;
+
+                // every square left behind became trail
+                if(startChar != GameState.SPACE_CHAR) {
+                    squareSum -= LevelSymmetry.squareKey(startRow, startCol,
+                            startChar);
+                }
+                for(int i = 0; i < moved; i++) {
+                    squareSum += LevelSymmetry.squareKey(
+                            startRow + i * direction.getRowStep(),
+                            startCol + i * direction.getColStep(),
+                            GameState.TRAIL_CHAR);
+                }
+
+                if(state.levelPassed) {
+                    Direction[] found = Arrays.copyOf(prefix,
+                            prefix.length + depth + 1);
+                    System.arraycopy(moves, 0, found, prefix.length,
+                            depth + 1);
+                    solution.compareAndSet(null, found);
+                    stopped = true;
+                    return;
+                }
+
+                long fingerprint = LevelSymmetry.finish(squareSum,
+                        state.board.length, width, state.playerRow,
+                        state.playerCol, state.goalRow, state.goalCol);
+                boolean added = rookDistances[state.playerRow * width +
+                    state.playerCol] != IdaSolver.UNREACHABLE &&
+                    visited.add(fingerprint);
+                if(visited.isFull()) {
+                    truncated = true;
+                    stopped = true;
+                    return;
+                }
+                if(!added) {
+                    takeBack(depth);
+                    continue;
+                }
+
+                // hands the child to another task while workers need work
+                if(getSurplusQueuedTaskCount() < SURPLUS_LIMIT) {
+                    Direction[] childPrefix = Arrays.copyOf(prefix,
+                            prefix.length + depth + 1);
+                    System.arraycopy(moves, 0, childPrefix, prefix.length,
+                            depth + 1);
+                    SearchTask task = new SearchTask(new GameState(state),
+                            squareSum, childPrefix);
+                    task.fork();
+                    forked.add(task);
+                    takeBack(depth);
+                    continue;
+                }
+
+                depth++;
+                if(depth == moves.length) {
+                    moves = Arrays.copyOf(moves, 2 * depth);
+                    steps = Arrays.copyOf(steps, 2 * depth);
+                    startChars = Arrays.copyOf(startChars, 2 * depth);
+                    squareSums = Arrays.copyOf(squareSums, 2 * depth);
+                    tried = Arrays.copyOf(tried, 2 * depth);
+                }
+                tried[depth] = 0;
+            }
+        }
+
+        /**
+         * Takes back the move made at the given depth
+         *
+         * @param int depth depth of the move
+         */
+
+        private void takeBack(int depth) {
+            state.unslide(moves[depth], steps[depth], startChars[depth],
+                    false);
+            squareSum = squareSums[depth];
+        }
+    }
+
+    /**
+     * Searches a level for a solution
+     *
+     * @param GameState start start of the level, which is left unchanged
+     * @param int threads number of worker threads
+     * @param int stateLimit states to visit before giving up
+     * @return Result a solution, or why there is none
+     */
+
+    static Result solve(GameState start, int threads, int stateLimit) {
+        long startTime = System.nanoTime();
+        ParallelSolver solver = new ParallelSolver(start, stateLimit);
+        Result result = new Result();
+        result.threads = threads;
+
+        if(start.levelPassed) {
+            result.solved = true;
+            result.moves = new Direction[0];
+        }
+        else {
+            GameState state = new GameState(start);
+            long squareSum = LevelSymmetry.squareSum(state);
+            solver.visited.add(LevelSymmetry.finish(squareSum,
+                        state.board.length, solver.width, state.playerRow,
+                        state.playerCol, state.goalRow, state.goalCol));
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                pool.invoke(solver.new SearchTask(state, squareSum,
+                            new Direction[0]));
+            } finally {
+                pool.shutdown();
+            }
+            result.moves = solver.solution.get();
+            result.solved = result.moves != null;
+            result.truncated = !result.solved && solver.truncated;
+        }
+        result.states = solver.visited.size();
+        result.nanos = System.nanoTime() - startTime;
+        return result;
+    }
+
+    /**
+     * Solves the level given on the command line. Without a thread count it
+     * solves on one thread and on all cores, once to warm up and then at
+     * least TIMED_RUNS times each and for TIMED_NANOS in all, and reports the
+     * speedup of the fastest runs.
+     */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1 && args.length != 3) {
+            System.out.print(USAGE);
+            return;
+        }
+        GameState start = Streamline.readState(args[0]);
+        if (args.length == 3) {
+            System.out.println(solve(start, Integer.parseInt(args[1]),
+                        Integer.parseInt(args[2])));
+            return;
+        }
+
+        // the runs alternate so that both thread counts see the same JIT,
+        // and the fastest timed run of each is compared
+        int threads = Runtime.getRuntime().availableProcessors();
+        Result single = null;
+        Result parallel = null;
+        long timed = 0;
+        for(int run = 0; run <= TIMED_RUNS || timed < TIMED_NANOS; run++) {
+            Result one = solve(start, 1, DEFAULT_STATE_LIMIT);
+            Result all = solve(start, threads, DEFAULT_STATE_LIMIT);
+            if(run == 0) {
+                continue;
+            }
+            timed += one.nanos + all.nanos;
+            if(single == null || one.nanos < single.nanos) {
+                single = one;
+            }
+            if(parallel == null || all.nanos < parallel.nanos) {
+                parallel = all;
+            }
+        }
+        System.out.println(single);
+        System.out.println(parallel);
+        System.out.println(String.format(Locale.ROOT, SPEEDUP, threads,
+                    (double) single.nanos / parallel.nanos));
+    }
+}
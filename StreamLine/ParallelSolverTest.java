@@ -0,0 +1,181 @@
+/**
+ * File: ParallelSolverTest.java
+ *
+ * Included below are checks that ParallelSolver gives up within its state
+ * limit on a level it can not solve, however small the limit, and that its
+ * visited set keeps every fingerprint exactly once while it grows.
+ */
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The ParallelSolverTest class solves a level with no solution, whose
+ * search visits 219 states, under limits far below that and under one above
+ * it. Every search runs with a deadline, so a search that never ends fails
+ * the check instead of hanging it. It then has every core add the same
+ * fingerprints to one VisitedSet at once, so that the set grows while they
+ * add. Run it with `java ParallelSolverTest`; it throws an AssertionError
+ * on the first check that fails.
+ */
+
+public class ParallelSolverTest {
+    // a level with no solution, player at the bottom left
+    private static final String[] UNSOLVABLE = {
+        "    XX X   ",
+        "X          ",
+        "        X  ",
+        "X    X X   ",
+        "  XX       ",
+        "           ",
+        " X   X X X ",
+        "  X X  X   ",
+        "   X       ",
+        "          X",
+        "    X      "};
+    private static final int GOAL_ROW = 7;
+    private static final int GOAL_COL = 5;
+
+    // states the full search of UNSOLVABLE visits
+    private static final int ALL_STATES = 219;
+
+    // seconds any one search may take
+    private static final int DEADLINE = 10;
+
+    // fingerprints each thread adds to the visited set, and the first one,
+    // past the two that share a slot marker
+    private static final int FINGERPRINTS = 1 << 18;
+    private static final long FIRST_FINGERPRINT = 2;
+
+    /**
+     * Runs the checks
+     */
+
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        for(int limit : new int[]{1, 2, 16, 100}) {
+            for(int threadCount : new int[]{1, threads}) {
+                ParallelSolver.Result result = solve(threadCount, limit);
+                check(!result.solved && result.truncated,
+                        "limit " + limit + " did not give up: " + result);
+                // each thread may add one state past the limit
+                check(result.states <= limit + threadCount,
+                        "limit " + limit + " visited " + result.states);
+            }
+        }
+
+        ParallelSolver.Result result = solve(1, 2 * ALL_STATES);
+        check(!result.solved && !result.truncated,
+                "the full search did not finish: " + result);
+        check(result.states == ALL_STATES,
+                "the full search visited " + result.states);
+
+        checkGrowth(Math.max(threads, 4));
+        System.out.println("ParallelSolverTest passed");
+    }
+
+    /**
+     * Has the given threads add the same fingerprints to one visited set,
+     * which starts far smaller than they need, and checks that each was
+     * added once and is found again afterwards
+     *
+     * @param int threads number of adding threads
+     */
+
+    private static void checkGrowth(int threads) throws Exception {
+        ParallelSolver.VisitedSet visited = new ParallelSolver.VisitedSet(
+                ParallelSolver.DEFAULT_STATE_LIMIT);
+        int startCapacity = visited.capacity();
+        check(startCapacity < FINGERPRINTS,
+                "the set started with " + startCapacity + " slots");
+
+        ExecutorService runner = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> counts = new ArrayList<Future<Integer>>();
+            for(int thread = 0; thread < threads; thread++) {
+                counts.add(runner.submit(() -> {
+                    int added = 0;
+                    for(int i = 0; i < FINGERPRINTS; i++) {
+                        if(visited.add(FIRST_FINGERPRINT + i)) {
+                            added++;
+                        }
+                    }
+                    return added;
+                }));
+            }
+            int added = 0;
+            for(Future<Integer> count : counts) {
+                added += count.get(DEADLINE, TimeUnit.SECONDS);
+            }
+            check(added == FINGERPRINTS, "fingerprints were added " + added +
+                    " times instead of " + FINGERPRINTS);
+        } finally {
+            runner.shutdownNow();
+        }
+
+        check(visited.size() == FINGERPRINTS, "the set holds " +
+                visited.size() + " fingerprints");
+        check(visited.capacity() > startCapacity, "the set did not grow");
+        check(!visited.isFull(), "the set gave up");
+        for(int i = 0; i < FINGERPRINTS; i++) {
+            check(!visited.add(FIRST_FINGERPRINT + i),
+                    "fingerprint " + i + " was lost");
+        }
+    }
+
+    /**
+     * Solves UNSOLVABLE within the deadline
+     *
+     * @param int threads number of worker threads
+     * @param int limit states to visit before giving up
+     * @return ParallelSolver.Result outcome of the search
+     */
+
+    private static ParallelSolver.Result solve(int threads, int limit)
+        throws Exception {
+        ExecutorService runner = Executors.newSingleThreadExecutor(
+                runnable -> {
+                    Thread thread = new Thread(runnable);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            return runner.submit(() -> ParallelSolver.solve(level(),
+                        threads, limit)).get(DEADLINE, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            throw new AssertionError("limit " + limit + " with " + threads +
+                    " threads ran past " + DEADLINE + " s");
+        } finally {
+            runner.shutdownNow();
+        }
+    }
+
+    /**
+     * Builds the state of UNSOLVABLE
+     *
+     * @return GameState start of the level
+     */
+
+    private static GameState level() {
+        GameState state = new GameState(UNSOLVABLE.length,
+                UNSOLVABLE[0].length(), UNSOLVABLE.length - 1, 0, GOAL_ROW,
+                GOAL_COL);
+        for(int row = 0; row < UNSOLVABLE.length; row++) {
+            state.board[row] = UNSOLVABLE[row].toCharArray();
+        }
+        return state;
+    }
+
+    /**
+     * Fails with the given message unless the condition holds
+     *
+     * @param boolean condition what must hold
+     * @param String message what went wrong otherwise
+     */
+
+    private static void check(boolean condition, String message) {
+        if(!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/**
+ * File: PlayoutEvaluator.java
+ *
+ * Included below is a Monte Carlo difficulty estimate for levels too large
+ * to analyze exactly. Many random playouts are run from the start of a level
+ * and the share of them that reach the goal within a move limit is reported.
+ */
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The PlayoutEvaluator class runs playouts on a fixed number of worker
+ * threads. Every worker owns one mutable copy of the start state and its own
+ * random number generator split off a common seed, and takes every playout
+ * back with GameState.unslide() instead of copying the start again, so the
+ * workers share nothing but the read-only distance field and scale with the
+ * number of cores.
+ *
+ * Each move of a playout is, with probability epsilon, a random move that
+ * changes the state and otherwise the move suggested by the level's
+ * DistanceField. An epsilon of 1 gives purely random playouts.
+ */
+
+public class PlayoutEvaluator {
+    static final String USAGE =
+        "Usage: \n" +
+        "> java PlayoutEvaluator <filename> <playouts> <moves>  - to estimat" +
+        "e the chance of\n" +
+        "                                                         reaching t" +
+        "he goal within\n" +
+        "                                                         the given " +
+        "number of moves\n" +
+        "> java PlayoutEvaluator <filename> <playouts> <moves> <epsilon> [th" +
+        "reads] [seed]\n" +
+        "                                                       - to follow " +
+        "hints with\n" +
+        "                                                         probabilit" +
+        "y 1 - epsilon\n";
+
+    // random playouts unless asked otherwise
+    static final double DEFAULT_EPSILON = 1;
+
+    // all directions in ordinal order
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    // nanoseconds in a second
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    // report statements
+    private static final String REPORT =
+        "%d playouts, %d reached the goal within %d moves\n" +
+        "P(goal) = %.6f +- %.6f\n" +
+        "mean moves of successful playouts: %.2f\n" +
+        "%d threads, %.0f playouts per second";
+
+    /**
+     * The Result class holds the outcome of an evaluation
+     */
+
+    static class Result {
+        long playouts;
+        long successes;
+        long successfulMoves;
+        int maxMoves;
+        int threads;
+        long nanos;
+
+        /**
+         * Returns the estimated probability of reaching the goal
+         *
+         * @return double share of playouts that reached the goal
+         */
+
+        double getProbability() {
+            return playouts == 0 ? 0 : (double) successes / playouts;
+        }
+
+        /**
+         * Returns the standard error of getProbability()
+         *
+         * @return double standard error
+         */
+
+        double getStandardError() {
+            if(playouts == 0) {
+                return 0;
+            }
+            double p = getProbability();
+            return Math.sqrt(p * (1 - p) / playouts);
+        }
+
+        /**
+         * Returns the number of playouts run per second of wall time
+         *
+         * @return double playouts per second
+         */
+
+        double getPlayoutsPerSecond() {
+            return nanos == 0 ? 0 : playouts * NANOS_PER_SECOND / nanos;
+        }
+
+        @Override
+        public String toString() {
+            double meanMoves = successes == 0 ? 0
+                : (double) successfulMoves / successes;
+            return String.format(Locale.ROOT, REPORT, playouts, successes,
+                    maxMoves, getProbability(), getStandardError(), meanMoves,
+                    threads, getPlayoutsPerSecond());
+        }
+    }
+
+    /**
+     * The Worker class runs a share of the playouts on its own state
+     */
+
+    static class Worker implements Callable<long[]> {
+        private final GameState state;
+        private final DistanceField field;
+        private final SplittableRandom random;
+        private final long playouts;
+        private final int maxMoves;
+        private final double epsilon;
+
+        // moves of the current playout, kept to take them back
+        private final Direction[] directions;
+        private final int[] steps;
+        private final char[] startChars;
+
+        // directions that change the state, filled for each random move
+        private final Direction[] choices = new Direction[DIRECTIONS.length];
+
+        /**
+         * Prepares a worker
+         *
+         * @param GameState start start of the level, copied
+         * @param DistanceField field hints for the level
+         * @param SplittableRandom random random numbers for this worker only
+         * @param long playouts number of playouts to run
+         * @param int maxMoves moves allowed per playout
+         * @param double epsilon chance of a random move
+         */
+
+        Worker(GameState start, DistanceField field, SplittableRandom random,
+               long playouts, int maxMoves, double epsilon) {
+            this.state = new GameState(start);
+            this.field = field;
+            this.random = random;
+            this.playouts = playouts;
+            this.maxMoves = maxMoves;
+            this.epsilon = epsilon;
+            this.directions = new Direction[maxMoves];
+            this.steps = new int[maxMoves];
+            this.startChars = new char[maxMoves];
+        }
+
+        /**
+         * Runs all playouts of this worker
+         *
+         * @return long[] successes at 0 and their total moves at 1
+         */
+
+        @Override
+        public long[] call() {
+            long successes = 0;
+            long successfulMoves = 0;
+            boolean startPassed = state.levelPassed;
+            for(long i = 0; i < playouts; i++) {
+                int moves = playout();
+                if(state.levelPassed) {
+                    successes++;
+                    successfulMoves += moves;
+                }
+                // takes the playout back, newest move first
+                for(int j = moves - 1; j >= 0; j--) {
+                    state.unslide(directions[j], steps[j], startChars[j],
+                            j == 0 ? startPassed : false);
+                }
+            }
+            return new long[]{successes, successfulMoves};
+        }
+
+        /**
+         * Plays moves until the goal is reached, the player is stuck or the
+         * move limit is hit, logging every move.
+         *
+         * @return int number of moves made
+         */
+
+        private int playout() {
+            int moves = 0;
+            while(moves < maxMoves && !state.levelPassed) {
+                Direction direction = null;
+                if(random.nextDouble() >= epsilon) {
+                    direction = field.bestDirection(state.playerRow,
+                            state.playerCol);
+                }
+
+                char startChar = state.board[state.playerRow][state.playerCol];
+                int moved = direction == null ? 0 : state.slide(direction);
+                if(moved == 0) {
+                    // the hint was blocked by the trail, or there was no
+                    // hint, so picks any move that changes the state
+                    direction = randomMove();
+                    if(direction == null) {
+                        return moves;
+                    }
+                    moved = state.slide(direction);
+                }
+                directions[moves] = direction;
+                steps[moves] = moved;
+                startChars[moves] = startChar;
+                moves++;
+            }
+            return moves;
+        }
+
+        /**
+         * Returns a uniformly random direction among those in which the
+         * player can move at least one square.
+         *
+         * @return Direction random move, or null if the player is stuck
+         */
+
+        private Direction randomMove() {
+            int count = 0;
+            for(Direction direction : DIRECTIONS) {
+                int row = state.playerRow + direction.getRowStep();
+                int col = state.playerCol + direction.getColStep();
+                if(row < 0 || row >= state.board.length || col < 0 ||
+                        col >= state.board[0].length) {
+                    continue;
+                }
+                if((row == state.goalRow && col == state.goalCol) ||
+                        state.board[row][col] == GameState.SPACE_CHAR) {
+                    choices[count++] = direction;
+                }
+            }
+            return count == 0 ? null : choices[random.nextInt(count)];
+        }
+    }
+
+    /**
+     * Estimates the chance of reaching the goal of a level within the given
+     * number of moves.
+     *
+     * @param GameState start start of the level, which is left unchanged
+     * @param long playouts number of playouts to run
+     * @param int maxMoves moves allowed per playout
+     * @param double epsilon chance of a random move instead of the hint
+     * @param int threads number of worker threads
+     * @param long seed seed the worker random numbers are split from
+     * @return Result outcome of the playouts
+     */
+
+    static Result evaluate(GameState start, long playouts, int maxMoves,
+                           double epsilon, int threads, long seed)
+        throws InterruptedException {
+        DistanceField field = new DistanceField(start);
+        SplittableRandom seeds = new SplittableRandom(seed);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long startTime = System.nanoTime();
+        try {
+            List<Worker> workers = new ArrayList<Worker>();
+            for(int i = 0; i < threads; i++) {
+                // spreads the remainder over the first workers
+                long share = playouts / threads + (i < playouts % threads
+                        ? 1 : 0);
+                workers.add(new Worker(start, field, seeds.split(), share,
+                            maxMoves, epsilon));
+            }
+
+            Result result = new Result();
+            for(Future<long[]> future : pool.invokeAll(workers)) {
+                long[] counts = future.get();
+                result.successes += counts[0];
+                result.successfulMoves += counts[1];
+            }
+            result.playouts = playouts;
+            result.maxMoves = maxMoves;
+            result.threads = threads;
+            result.nanos = System.nanoTime() - startTime;
+            return result;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Evaluates the level given on the command line and prints the result
+     */
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3 || args.length > 6) {
+            System.out.print(USAGE);
+            return;
+        }
+        GameState start = Streamline.readState(args[0]);
+        long playouts = Long.parseLong(args[1]);
+        int maxMoves = Integer.parseInt(args[2]);
+        double epsilon = args.length > 3 ? Double.parseDouble(args[3])
+            : DEFAULT_EPSILON;
+        int threads = args.length > 4 ? Integer.parseInt(args[4])
+            : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 5 ? Long.parseLong(args[5])
+            : System.nanoTime();
+
+        System.out.println(evaluate(start, playouts, maxMoves, epsilon,
+                    threads, seed));
+    }
+}
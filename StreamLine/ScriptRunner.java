@@ -0,0 +1,278 @@
+/**
+ * File: ScriptRunner.java
+ *
+ * Included below is a non-interactive way to play Streamline. A script of
+ * the commands play() understands is applied to one or more levels without
+ * drawing anything, and a single result line is printed per level, so bots
+ * and regression runs go at the speed of the game itself.
+ */
+
+import java.io.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * The ScriptRunner class reads a script once, through a buffered reader,
+ * into one byte per command. Commands may be written one per line as for
+ * play() or run together, as in "wdsa"; whitespace is skipped. Each level is
+ * then played on a single GameState with GameState.slide(), and undo takes
+ * moves back with GameState.unslide() from a log of moves instead of keeping
+ * a copy of the board per move. "r" restarts the level by taking back all
+ * logged moves at once. A level stops at the goal or at "q". The commands
+ * "h" and "o" need a player and are skipped, anything else is counted as
+ * invalid.
+ */
+
+public class ScriptRunner {
+    static final String USAGE =
+        "Usage: \n" +
+        "> java ScriptRunner <script> <level>...  - to play the script on e" +
+        "ach level and print\n" +
+        "                                           one CSV line per level, " +
+        "reading the\n" +
+        "                                           script from standard inp" +
+        "ut if it is -\n";
+
+    // script read from standard input
+    static final String STANDARD_INPUT = "-";
+
+    // commands as stored, directions by ordinal
+    private static final byte UNDO = 4;
+    private static final byte QUIT = 5;
+    private static final byte RESTART = 6;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    // initial length of the move log
+    private static final int INITIAL_LOG = 64;
+
+    // report formats
+    private static final String CSV_HEADER = "level,passed,moves,undos," +
+        "commands_used,player_row,player_col";
+    private static final String CSV_ROW = "%s,%b,%d,%d,%d,%d,%d";
+    private static final String UNREADABLE = "Skipping unreadable level %s";
+    private static final String SUMMARY =
+        "%d commands (%d invalid) on %d levels in %d ms";
+
+    /**
+     * The Script class holds the commands of a script
+     */
+
+    static class Script {
+        byte[] commands = new byte[INITIAL_LOG];
+        int length;
+        int invalid;
+
+        /**
+         * Adds a command at the end of the script
+         *
+         * @param byte command command to add
+         */
+
+        void add(byte command) {
+            if(length == commands.length) {
+                commands = Arrays.copyOf(commands, 2 * length);
+            }
+            commands[length++] = command;
+        }
+    }
+
+    /**
+     * The Result class holds the outcome of a script on one level
+     */
+
+    static class Result {
+        String level;
+        boolean passed;
+
+        // moves left after undos, the path to where the player ended up
+        int moves;
+        int undos;
+
+        // commands applied before the goal or "q" stopped the level
+        int commandsUsed;
+        int playerRow;
+        int playerCol;
+
+        /**
+         * Formats this result as a CSV row
+         *
+         * @return String formatted row
+         */
+
+        String format() {
+            return String.format(Locale.ROOT, CSV_ROW, level, passed, moves,
+                    undos, commandsUsed, playerRow, playerCol);
+        }
+    }
+
+    /**
+     * Reads a script, skipping whitespace and the commands that need a
+     * player.
+     *
+     * @param Reader reader script to read, buffered by the caller
+     * @return Script commands of the script
+     */
+
+    static Script read(Reader reader) throws IOException {
+        Script script = new Script();
+        char[] buffer = new char[8192];
+        int count;
+        while((count = reader.read(buffer)) > 0) {
+            for(int i = 0; i < count; i++) {
+                switch(buffer[i]) {
+                    case 'd': script.add((byte) Direction.RIGHT.ordinal());
+                              break;
+                    case 'w': script.add((byte) Direction.UP.ordinal());
+                              break;
+                    case 'a': script.add((byte) Direction.LEFT.ordinal());
+                              break;
+                    case 's': script.add((byte) Direction.DOWN.ordinal());
+                              break;
+                    case 'u': script.add(UNDO);
+                              break;
+                    case 'q': script.add(QUIT);
+                              break;
+                    case 'r': script.add(RESTART);
+                              break;
+                    case 'h':
+                    case 'o':
+                              break;
+                    default:
+                        if(!Character.isWhitespace(buffer[i])) {
+                            script.invalid++;
+                        }
+                }
+            }
+        }
+        return script;
+    }
+
+    /**
+     * Plays a script on a level
+     *
+     * @param String level name of the level in the result
+     * @param GameState start start of the level, which is left unchanged
+     * @param Script script commands to play
+     * @return Result outcome of the script
+     */
+
+    static Result run(String level, GameState start, Script script) {
+        GameState state = new GameState(start);
+        Direction[] directions = new Direction[INITIAL_LOG];
+        int[] steps = new int[INITIAL_LOG];
+        char[] startChars = new char[INITIAL_LOG];
+        boolean startPassed = state.levelPassed;
+
+        Result result = new Result();
+        result.level = level;
+        int moves = 0;
+        int i = 0;
+        while(i < script.length && !state.levelPassed) {
+            byte command = script.commands[i++];
+            if(command == QUIT) {
+                break;
+            }
+            if(command == UNDO) {
+                if(moves > 0) {
+                    moves--;
+                    state.unslide(directions[moves], steps[moves],
+                            startChars[moves],
+                            moves == 0 ? startPassed : false);
+                    result.undos++;
+                }
+                continue;
+            }
+            if(command == RESTART) {
+                // only the trail of the logged moves is cleared
+                while(moves > 0) {
+                    moves--;
+                    state.unslide(directions[moves], steps[moves],
+                            startChars[moves],
+                            moves == 0 ? startPassed : false);
+                }
+                continue;
+            }
+
+            Direction direction = DIRECTIONS[command];
+            char startChar = state.board[state.playerRow][state.playerCol];
+            int moved = state.slide(direction);
+            // like recordAndMove(), only moves that changed the state can
+            // be undone
+            if(moved > 0) {
+                if(moves == directions.length) {
+                    directions = Arrays.copyOf(directions, 2 * moves);
+                    steps = Arrays.copyOf(steps, 2 * moves);
+                    startChars = Arrays.copyOf(startChars, 2 * moves);
+                }
+                directions[moves] = direction;
+                steps[moves] = moved;
+                startChars[moves] = startChar;
+                moves++;
+            }
+        }
+
+        result.passed = state.levelPassed;
+        result.moves = moves;
+        result.commandsUsed = i;
+        result.playerRow = state.playerRow;
+        result.playerCol = state.playerCol;
+        return result;
+    }
+
+    /**
+     * Reads and plays a single level file
+     *
+     * @param String filename level file to read
+     * @param Script script commands to play
+     * @return Result outcome of the script, or null if the file is not a
+     *         level
+     */
+
+    private static Result runFile(String filename, Script script) {
+        GameState start;
+        try {
+            start = Streamline.readState(filename);
+        } catch (IOException | RuntimeException e) {
+            System.err.println(String.format(UNREADABLE, filename));
+            return null;
+        }
+        return run(filename, start, script);
+    }
+
+    /**
+     * Plays the script given on the command line on every level given after
+     * it and prints one CSV line per level, in the order given.
+     */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.print(USAGE);
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        Script script;
+        Reader source = args[0].equals(STANDARD_INPUT)
+            ? new InputStreamReader(System.in)
+            : new FileReader(args[0]);
+        try(BufferedReader reader = new BufferedReader(source)) {
+            script = read(reader);
+        }
+
+        List<Result> results = Arrays.stream(args, 1, args.length)
+            .parallel()
+            .map(filename -> runFile(filename, script))
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+
+        PrintWriter writer = new PrintWriter(new BufferedWriter(
+                    new OutputStreamWriter(System.out)));
+        writer.println(CSV_HEADER);
+        for(Result result : results) {
+            writer.println(result.format());
+        }
+        writer.flush();
+        System.err.println(String.format(SUMMARY, script.length,
+                    script.invalid, results.size(),
+                    System.currentTimeMillis() - startTime));
+    }
+}
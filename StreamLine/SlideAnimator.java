@@ -0,0 +1,119 @@
+/**
+ * File: SlideAnimator.java
+ *
+ * This file animates the player sliding across the board and reveals the
+ * trail it leaves behind as it goes. A single SlideAnimator is created with
+ * the GUI and replayed for every move.
+ */
+
+import javafx.animation.Interpolator;
+import javafx.animation.Transition;
+import javafx.util.Duration;
+
+/**
+ * This class moves the player from the square it slid from to the square it
+ * slid to and, as the player passes each square on the way, has the
+ * BoardView redraw that square as the game board now calls for. That
+ * shows new trail behind a move and clears it in front of an undo. Positions
+ * are in board units, where square (row, col) is centered at
+ * (col + 0.5, row + 0.5). Starting a slide while one is still running
+ * finishes the running one first, so the board is never left half drawn.
+ */
+
+public class SlideAnimator extends Transition {
+    // milliseconds for a slide, whatever its length
+    static final double SLIDE_TIME = 250;
+
+    private final RoundedSquare player;
+
+    // what the slide runs over, set by slide()
+    private BoardView view;
+    private int fromCol;
+    private int fromRow;
+    private int colStep;
+    private int rowStep;
+    private int steps;
+
+    // squares from the start of the slide whose color is already updated
+    private int revealed;
+
+    /**
+     * Creates the animator for the given player
+     *
+     * @param player the player to move
+     */
+
+    public SlideAnimator(RoundedSquare player) {
+        this.player = player;
+        setCycleDuration(Duration.millis(SLIDE_TIME));
+        setInterpolator(Interpolator.EASE_OUT);
+    }
+
+    /**
+     * Starts animating a slide along a row or column. The game must already
+     * have made the move, since the view reads the trail from its board.
+     *
+     * @param view    view of the board, as kept by GuiStreamline
+     * @param fromCol old player column
+     * @param fromRow old player row
+     * @param toCol   new player column
+     * @param toRow   new player row
+     * @return        void
+     */
+
+    public void slide(BoardView view, int fromCol, int fromRow, int toCol,
+            int toRow) {
+        fastForward();
+
+        this.view = view;
+        this.fromCol = fromCol;
+        this.fromRow = fromRow;
+        this.colStep = Integer.signum(toCol - fromCol);
+        this.rowStep = Integer.signum(toRow - fromRow);
+        this.steps = Math.max(Math.abs(toCol - fromCol),
+                Math.abs(toRow - fromRow));
+        this.revealed = 0;
+
+        playFromStart();
+    }
+
+    /**
+     * Jumps a running slide to its end, placing the player and revealing all
+     * of its trail at once.
+     *
+     * @param  none
+     * @return void
+     */
+
+    public void fastForward() {
+        if(getStatus() == Status.RUNNING) {
+            stop();
+            interpolate(1);
+        }
+    }
+
+    /**
+     * Places the player the given fraction of the way along the slide and
+     * updates the squares it has reached.
+     *
+     * @param frac fraction of the slide done, already eased
+     * @return     void
+     */
+
+    @Override
+    protected void interpolate(double frac) {
+        double travelled = frac * steps;
+        player.setCenterX(fromCol + colStep * travelled +
+                GuiStreamline.MIDDLE_OFFSET);
+        player.setCenterY(fromRow + rowStep * travelled +
+                GuiStreamline.MIDDLE_OFFSET);
+
+        // the square the player is on is updated once it gets there
+        while(revealed <= steps && revealed <= travelled) {
+            int row = fromRow + rowStep * revealed;
+            int col = fromCol + colStep * revealed;
+            view.updateSquare(row, col);
+            revealed++;
+        }
+    }
+}
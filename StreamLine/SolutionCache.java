@@ -0,0 +1,452 @@
+/**
+ * File: SolutionCache.java
+ *
+ * Included below is a cache of level solutions kept in a file, so that a
+ * level is only solved once however often it is analyzed, and again only
+ * after it changes.
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * The SolutionCache class maps the fingerprint of a level, as read from its
+ * file, to the shortest solution IdaSolver found for it and the statistics
+ * of that search. Editing a level changes its fingerprint, so a changed
+ * level is never answered from the cache and is simply solved and appended
+ * again. Every record also holds the size of its level and a checksum of
+ * the level computed differently from the fingerprint, and a record that
+ * does not match both is treated as missing, so a level that only shares
+ * its fingerprint with a cached one is solved instead of being answered
+ * with the other level's result. That matters most for levels without a
+ * solution, which have no moves to check. Solutions are also replayed
+ * before they are returned, so a solution that does not pass its level is
+ * treated as missing too.
+ *
+ * The file is only ever appended to, through a memory mapping that is
+ * doubled whenever it fills up. A record holds the fingerprint, the number
+ * of moves, the nodes and time the search took, the size and checksum of
+ * the level and then the moves at two bits per Direction, so a solution of
+ * 40 moves takes 10 bytes. The mark
+ * that starts a record is written last, and reading stops at the first
+ * record without one, so a record cut short by a crash is ignored and
+ * overwritten by the next append. On opening, the records are read once
+ * into an index from fingerprint to record, and the latest record of a
+ * fingerprint wins.
+ *
+ * A file written by a different solver version is started over, since its
+ * solutions may no longer be the ones the solver would find.
+ */
+
+public class SolutionCache implements Closeable {
+    static final String USAGE =
+        "Usage: \n" +
+        "> java SolutionCache <cache> <levels>   - to print a shortest solut" +
+        "ion of every\n" +
+        "                                          level file or level of a " +
+        "directory, solving\n" +
+        "                                          only levels not in the ca" +
+        "che file\n";
+
+    // nodes the solver may visit per level
+    static final long SOLVER_NODES = 50000000;
+
+    // file layout: magic number and version, then records
+    private static final int MAGIC = 0x534c5343;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 8;
+
+    // a record: mark, fingerprint, moves, nodes, nanos, height, width,
+    // checksum, packed moves
+    private static final int RECORD_MARK = 0x52454331;
+    private static final int FINGERPRINT = 4;
+    private static final int LENGTH = 12;
+    private static final int NODES = 16;
+    private static final int NANOS = 24;
+    private static final int HEIGHT = 32;
+    private static final int WIDTH = 36;
+    private static final int CHECKSUM = 40;
+    private static final int MOVES = 44;
+
+    // stored as the number of moves of a level without a solution
+    private static final int NO_SOLUTION = -1;
+
+    // moves packed into a byte
+    private static final int BITS_PER_MOVE = 2;
+    private static final int MOVES_PER_BYTE = Byte.SIZE / BITS_PER_MOVE;
+    private static final int MOVE_MASK = 3;
+
+    // bytes mapped for a new file
+    private static final int INITIAL_MAPPING = 1 << 16;
+
+    // all directions in ordinal order, and the key for each in a script
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final String KEYS = "dwas";
+
+    // report statements
+    private static final String HEADER = "level,solution_length,moves";
+    private static final String ROW = "%s,%d,%s";
+    private static final String NOT_SOLVED = "%s,,gave up after %d nodes";
+    private static final String UNREADABLE = "Skipping unreadable level %s";
+    private static final String SUMMARY =
+        "%d levels, %d from the cache, %d solved in %d ms";
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    // record offset of every fingerprint
+    private final Map<Long, Integer> index = new HashMap<Long, Integer>();
+
+    // end of the last complete record
+    private int end;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Opens a cache file, creating it if there is none, and reads its index
+     *
+     * @param Path file cache file
+     */
+
+    SolutionCache(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if(size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("cache file too large: " + file);
+        }
+        map(Math.max(INITIAL_MAPPING, (int) size));
+
+        if(size < HEADER_SIZE || buffer.getInt(0) != MAGIC ||
+                buffer.getInt(4) != VERSION) {
+            // new, foreign or out of date: starts over, hiding any records
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(HEADER_SIZE, 0);
+            end = HEADER_SIZE;
+            return;
+        }
+
+        int position = HEADER_SIZE;
+        while(position + MOVES <= buffer.capacity() &&
+                buffer.getInt(position) == RECORD_MARK) {
+            int next = position + MOVES +
+                packedSize(buffer.getInt(position + LENGTH));
+            if(next > buffer.capacity()) {
+                break;
+            }
+            index.put(buffer.getLong(position + FINGERPRINT), position);
+            position = next;
+        }
+        end = position;
+    }
+
+    /**
+     * Maps the first bytes of the file, growing it if needed
+     *
+     * @param int size bytes to map
+     */
+
+    private void map(int size) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * Returns the bytes taken by the given number of packed moves
+     *
+     * @param int length number of moves, or NO_SOLUTION
+     * @return int bytes
+     */
+
+    private static int packedSize(int length) {
+        return length <= 0 ? 0 : (length + MOVES_PER_BYTE - 1) /
+            MOVES_PER_BYTE;
+    }
+
+    /**
+     * Returns the cached result for a level
+     *
+     * @param GameState start start of the level
+     * @return IdaSolver.Result the result, or null if the level is not cached
+     */
+
+    synchronized IdaSolver.Result get(GameState start) {
+        long fingerprint = LevelSymmetry.fingerprint(start);
+        Integer position = index.get(fingerprint);
+        if(position == null) {
+            misses++;
+            return null;
+        }
+
+        if(buffer.getInt(position + HEIGHT) != start.board.length ||
+                buffer.getInt(position + WIDTH) != start.board[0].length ||
+                buffer.getInt(position + CHECKSUM) != checksum(start)) {
+            // another level with the same fingerprint
+            misses++;
+            return null;
+        }
+
+        IdaSolver.Result result = new IdaSolver.Result();
+        int length = buffer.getInt(position + LENGTH);
+        result.nodes = buffer.getLong(position + NODES);
+        result.nanos = buffer.getLong(position + NANOS);
+        result.solved = length != NO_SOLUTION;
+        result.moves = new Direction[Math.max(length, 0)];
+        for(int i = 0; i < result.moves.length; i++) {
+            int packed = buffer.get(position + MOVES + i / MOVES_PER_BYTE);
+            result.moves[i] = DIRECTIONS[packed >>
+                (i % MOVES_PER_BYTE * BITS_PER_MOVE) & MOVE_MASK];
+        }
+        result.lowerBound = result.moves.length;
+
+        if(result.solved && !passes(start, result.moves)) {
+            // another level with the same fingerprint
+            index.remove(fingerprint);
+            misses++;
+            return null;
+        }
+        hits++;
+        return result;
+    }
+
+    /**
+     * Returns a checksum of a level that does not depend on its fingerprint,
+     * to tell apart levels that share one
+     *
+     * @param GameState state the level
+     * @return int checksum of the board, player and goal
+     */
+
+    private static int checksum(GameState state) {
+        int checksum = Arrays.deepHashCode(state.board);
+        checksum = 31 * checksum + state.playerRow;
+        checksum = 31 * checksum + state.playerCol;
+        checksum = 31 * checksum + state.goalRow;
+        return 31 * checksum + state.goalCol;
+    }
+
+    /**
+     * Returns true if the given moves pass the level
+     *
+     * @param GameState start start of the level
+     * @param Direction[] moves moves to play
+     * @return boolean true if every move moves and the last reaches the goal
+     */
+
+    private static boolean passes(GameState start, Direction[] moves) {
+        GameState state = new GameState(start);
+        for(Direction move : moves) {
+            if(state.levelPassed || state.slide(move) == 0) {
+                return false;
+            }
+        }
+        return state.levelPassed;
+    }
+
+    /**
+     * Appends the result of a finished search for a level. Results of
+     * searches that ran out of budget are not cached.
+     *
+     * @param GameState start start of the level
+     * @param IdaSolver.Result result result of solving it
+     */
+
+    synchronized void put(GameState start, IdaSolver.Result result)
+        throws IOException {
+        if(result.exhausted) {
+            return;
+        }
+        int length = result.solved ? result.moves.length : NO_SOLUTION;
+        int size = MOVES + packedSize(length);
+        if(end + size > buffer.capacity()) {
+            long capacity = buffer.capacity();
+            while(end + size > capacity) {
+                capacity *= 2;
+            }
+            if(capacity > Integer.MAX_VALUE) {
+                throw new IOException("cache file full");
+            }
+            map((int) capacity);
+        }
+
+        long fingerprint = LevelSymmetry.fingerprint(start);
+        buffer.putLong(end + FINGERPRINT, fingerprint);
+        buffer.putInt(end + LENGTH, length);
+        buffer.putLong(end + NODES, result.nodes);
+        buffer.putLong(end + NANOS, result.nanos);
+        buffer.putInt(end + HEIGHT, start.board.length);
+        buffer.putInt(end + WIDTH, start.board[0].length);
+        buffer.putInt(end + CHECKSUM, checksum(start));
+        for(int i = 0; i < packedSize(length); i++) {
+            int packed = 0;
+            for(int j = 0; j < MOVES_PER_BYTE; j++) {
+                int move = i * MOVES_PER_BYTE + j;
+                if(move < length) {
+                    packed |= result.moves[move].ordinal() <<
+                        (j * BITS_PER_MOVE);
+                }
+            }
+            buffer.put(end + MOVES + i, (byte) packed);
+        }
+        // the mark goes last so that a record cut short is never read, and
+        // whatever an earlier record cut short left after it is cut off
+        if(end + size + Integer.BYTES <= buffer.capacity()) {
+            buffer.putInt(end + size, 0);
+        }
+        buffer.putInt(end, RECORD_MARK);
+        index.put(fingerprint, end);
+        end += size;
+    }
+
+    /**
+     * Returns a shortest solution of a level from the cache, or solves the
+     * level with IdaSolver and caches the result
+     *
+     * @param GameState start start of the level
+     * @param long nodeBudget nodes the solver may visit
+     * @return IdaSolver.Result the result
+     */
+
+    IdaSolver.Result solve(GameState start, long nodeBudget)
+        throws IOException {
+        IdaSolver.Result result = get(start);
+        if(result == null) {
+            result = IdaSolver.solve(start, nodeBudget, IdaSolver.UNLIMITED);
+            put(start, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of levels in the cache
+     *
+     * @return int cached levels
+     */
+
+    synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache
+     *
+     * @return long hits
+     */
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that were not
+     *
+     * @return long misses
+     */
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Writes the cache to disk and cuts the file down to its records
+     */
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        buffer = null;
+        channel.truncate(end);
+        channel.close();
+    }
+
+    /**
+     * Returns moves as the keys that play them
+     *
+     * @param Direction[] moves moves
+     * @return String keys such as "dwas"
+     */
+
+    static String keys(Direction[] moves) {
+        StringBuilder keys = new StringBuilder(moves.length);
+        for(Direction move : moves) {
+            keys.append(KEYS.charAt(move.ordinal()));
+        }
+        return keys.toString();
+    }
+
+    /**
+     * Prints a shortest solution of every level given on the command line
+     */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.print(USAGE);
+            return;
+        }
+        List<Path> files = new ArrayList<Path>();
+        for(int i = 1; i < args.length; i++) {
+            Path path = Paths.get(args[i]);
+            if(Files.isDirectory(path)) {
+                try(Stream<Path> listing = Files.list(path)) {
+                    listing.filter(Files::isRegularFile).sorted()
+                        .forEach(files::add);
+                }
+            }
+            else {
+                files.add(path);
+            }
+        }
+
+        long startTime = System.currentTimeMillis();
+        try(SolutionCache cache = new SolutionCache(Paths.get(args[0]))) {
+            // the stream keeps the order of the files
+            List<String> rows = files.parallelStream()
+                .map(file -> solveFile(cache, file))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+            System.out.println(HEADER);
+            for(String row : rows) {
+                System.out.println(row);
+            }
+            System.err.println(String.format(SUMMARY, rows.size(),
+                        cache.getHits(), cache.getMisses(),
+                        System.currentTimeMillis() - startTime));
+        }
+    }
+
+    /**
+     * Solves a level file through the cache
+     *
+     * @param SolutionCache cache the cache
+     * @param Path file level file
+     * @return String report row, or null if the file is not a level
+     */
+
+    private static String solveFile(SolutionCache cache, Path file) {
+        GameState start;
+        try {
+            start = Streamline.readState(file.toString());
+        } catch (IOException | RuntimeException e) {
+            System.err.println(String.format(UNREADABLE, file));
+            return null;
+        }
+        IdaSolver.Result result;
+        try {
+            result = cache.solve(start, SOLVER_NODES);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        String level = file.getFileName().toString();
+        if(result.exhausted) {
+            return String.format(NOT_SOLVED, level, result.nodes);
+        }
+        return String.format(ROW, level, result.solved ?
+                result.moves.length : NO_SOLUTION, keys(result.moves));
+    }
+}
@@ -28,6 +28,12 @@ public class Streamline {
     GameState currentState;
     List<GameState> previousStates;
 
+    // distance to goal of every square, built the first time a hint is asked
+    DistanceField hintField;
+
+    // regions cut off by trail, built the first time a dead end is asked
+    DeadEndDetector deadEnds;
+
     // default characteristics of a game board
     private static final int DEFAULT_PLAYERROW = 5;
     private static final int DEFAULT_PLAYERCOL = 0;
@@ -44,16 +50,38 @@ public class Streamline {
     private static final String DOWN = "s";
     private static final String RIGHT = "d";
     private static final String UNDO = "u";
+    private static final String RESTART = "r";
     private static final String SAVE_TO_FILE = "o";
+    private static final String HINT = "h";
     private static final String QUIT = "q";
 
     // level passed statement
     private static final String LEVEL_PASSED = "Level Passed!";
 
+    // hint statements
+    private static final String HINT_MESSAGE = "Hint: move %s (%d moves left)";
+    // also printed by the GUI
+    static final String NO_HINT =
+        "Hint: no trail-free path to the goal";
+
+    // dead end statement
+    private static final String DEAD_END =
+        "The trail cut you off from the goal, undo with u";
+
     // space and new line for saveToFile
     private static final String SPACE_STRING = " ";
     private static final String LINE_STRING = "\n";
 
+    // command line option for the ANSI renderer
+    private static final String ANSI_OPTION = "--ansi";
+
+    // command line option for playing a script without a terminal
+    private static final String SCRIPT_OPTION = "--script";
+
+    // size of the window drawn around the player on marathon levels
+    private static final int MARATHON_ROWS = 20;
+    private static final int MARATHON_COLS = 30;
+
     // saved message
     private static final String SAVED_SUCCESS = "Saved current state to: saved_streamline_game";
 
@@ -73,6 +101,18 @@ public class Streamline {
         this.previousStates = new ArrayList<GameState>();
     }
 
+    /**
+     * Begins a game from the given state, for levels that were already read
+     * with readState().
+     *
+     * @param GameState state state to start from
+     */
+
+    Streamline(GameState state) {
+        this.currentState = state;
+        this.previousStates = new ArrayList<GameState>();
+    }
+
     public Streamline(String filename) {
         try {
             loadFromFile(filename);
@@ -91,35 +131,120 @@ public class Streamline {
      */
 
     protected void loadFromFile(String filename) throws IOException {
-        Scanner file = new Scanner(new File(filename));
         this.previousStates = new ArrayList<GameState>();
+        this.hintField = null;
+        this.deadEnds = null;
+        this.currentState = readState(filename);
+    }
+
+    /**
+     * Reads a game state from a file in the format written by saveToFile()
+     * without creating a Streamline game around it, for tools that only
+     * need the board.
+     *
+     * @param String filename name of file to read
+     * @return GameState state stored in the file
+     */
+
+    static GameState readState(String filename) throws IOException {
+        byte[] text;
+        try(InputStream file = new FileInputStream(filename)) {
+            text = file.readAllBytes();
+        }
+        // reads the file by hand rather than with a Scanner, whose regular
+        // expressions take longer to load than the rest of a short run
+        int[] position = new int[1];
 
         // gets the height and width
-        int newHeight = file.nextInt();
-        int newWidth = file.nextInt();
+        int newHeight = nextInt(text, position);
+        int newWidth = nextInt(text, position);
 
         // gets the player row and player column
-        int newPlayerRow = file.nextInt();
-        int newPlayerCol = file.nextInt();
+        int newPlayerRow = nextInt(text, position);
+        int newPlayerCol = nextInt(text, position);
 
         // gets the goal row and goal column
-        int newGoalRow = file.nextInt();
-        int newGoalCol = file.nextInt();
+        int newGoalRow = nextInt(text, position);
+        int newGoalCol = nextInt(text, position);
 
         // creates a new gameState with the initialized instance variables
         GameState newGameState = new GameState(newHeight, newWidth, 
                 newPlayerRow, newPlayerCol,
                 newGoalRow, newGoalCol);
 
-        file.nextLine();
+        skipLine(text, position);
         // gets the obstacles, empty spaces, and trails     
         for(int i = 0; i < newGameState.board.length; i++) {
-            String line = file.nextLine();
+            if(position[0] >= text.length) {
+                throw new NoSuchElementException(filename);
+            }
             for(int j = 0; j < newGameState.board[0].length; j++) {
-                newGameState.board[i][j] = line.charAt(j);
+                int at = position[0] + j;
+                if(at >= text.length || text[at] == '\n' ||
+                        text[at] == '\r') {
+                    throw new InputMismatchException(filename);
+                }
+                newGameState.board[i][j] = (char) (text[at] & 0xff);
             }
+            skipLine(text, position);
+        }
+        return newGameState;
+    }
+
+    /**
+     * Reads the next whitespace separated integer of a level file, like
+     * Scanner.nextInt()
+     *
+     * @param byte[] text contents of the file
+     * @param int[] position index to read from, moved past the integer
+     * @return int the integer
+     */
+
+    private static int nextInt(byte[] text, int[] position) {
+        int at = position[0];
+        while(at < text.length && Character.isWhitespace(text[at])) {
+            at++;
+        }
+        boolean negative = at < text.length && text[at] == '-';
+        if(negative) {
+            at++;
+        }
+        int begin = at;
+        long value = 0;
+        while(at < text.length && text[at] >= '0' && text[at] <= '9') {
+            value = value * 10 + (text[at] - '0');
+            if(value > Integer.MAX_VALUE) {
+                throw new InputMismatchException();
+            }
+            at++;
+        }
+        if(at == begin) {
+            throw at == text.length ? new NoSuchElementException()
+                : new InputMismatchException();
+        }
+        position[0] = at;
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Moves past the end of the current line, like Scanner.nextLine()
+     *
+     * @param byte[] text contents of the file
+     * @param int[] position index to read from, moved to the next line
+     */
+
+    private static void skipLine(byte[] text, int[] position) {
+        int at = position[0];
+        while(at < text.length && text[at] != '\n' && text[at] != '\r') {
+            at++;
+        }
+        if(at < text.length && text[at] == '\r') {
+            at++;
         }
-        this.currentState = newGameState;
+        if(at < text.length && text[at] == '\n') {
+            at++;
+        }
+        position[0] = at;
     }
 
     /**
@@ -137,6 +262,13 @@ public class Streamline {
         }
         GameState copyOfGameState = new GameState(currentState);
         this.currentState.move(direction);
+        int steps = Math.abs(currentState.playerRow -
+                copyOfGameState.playerRow) + Math.abs(currentState.playerCol -
+                copyOfGameState.playerCol);
+        if(deadEnds != null && steps > 0) {
+            deadEnds.moved(copyOfGameState.playerRow,
+                    copyOfGameState.playerCol, direction, steps);
+        }
         if(previousStates != null) {
             // if last element in previousStates is not equal to currentState
             if (!copyOfGameState.equals(currentState)) {
@@ -160,22 +292,135 @@ public class Streamline {
         this.currentState = previousStates.get(previousStates.size() - 1);
         // remove the previous state from the list
         previousStates.remove(previousStates.size() - 1);
+        if(deadEnds != null) {
+            if(deadEnds.canUndo()) {
+                deadEnds.undo();
+            }
+            else {
+                // built after this move, so it is built again when needed
+                deadEnds = null;
+            }
+        }
         return;
     }
 
+    /**
+     * Starts the level over. The first entry of previousStates is the state
+     * the level started in, so it becomes the current state as it is,
+     * without reading the file again or undoing the moves one by one, and
+     * the obstacles and the hint field carry over untouched. The history is
+     * cleared, so a restart can not be undone.
+     */
+
+    void restart() {
+        if(previousStates.isEmpty()) {
+            return;
+        }
+        this.currentState = previousStates.get(0);
+        if(deadEnds != null) {
+            if(deadEnds.getMoveCount() == previousStates.size()) {
+                deadEnds.restart();
+            }
+            else {
+                // built after the first move, so it is built again when
+                // needed
+                deadEnds = null;
+            }
+        }
+        previousStates.clear();
+    }
+
+    /**
+     * Returns true if trail has cut the player off from the goal, so that
+     * the level can not be passed without undoing. The regions of the board
+     * are built the first time this is asked and then kept up to date by
+     * every move and undo, so asking after each move costs almost nothing.
+     *
+     * @return boolean true if the level is certainly lost
+     */
+
+    boolean isDeadEnd() {
+        if(deadEnds == null) {
+            deadEnds = new DeadEndDetector(currentState);
+        }
+        return deadEnds.isDeadEnd();
+    }
+
+    /**
+     * Returns the distance field of the current level, building it the first
+     * time it is needed. Obstacles never change during a level, so one field
+     * answers every hint until the next level is loaded.
+     *
+     * @return DistanceField distance to goal of every square
+     */
+
+    DistanceField getHintField() {
+        if(hintField == null) {
+            hintField = new DistanceField(currentState);
+        }
+        return hintField;
+    }
+
+    /**
+     * Returns the first move of a shortest path from the player to the goal,
+     * ignoring trails.
+     *
+     * @return Direction next move, or null if the goal cannot be reached
+     */
+
+    Direction getHint() {
+        return getHintField().bestDirection(currentState.playerRow,
+                currentState.playerCol);
+    }
+
+    /**
+     * Returns the number of moves left on a shortest path from the player to
+     * the goal, ignoring trails.
+     *
+     * @return int remaining moves, or DistanceField.UNREACHABLE
+     */
+
+    int getHintDistance() {
+        return getHintField().distanceToGoal(currentState.playerRow,
+                currentState.playerCol);
+    }
+
     /** 
      * Runs game indefinitely until the player has reached the goal by 
      * printing the currentState. It takes the inputs "w", "a", "s", "d", "u",
-     * "o", and "q" and performs actions based on the command that the letters
-     * correspond to.
+     * "r", "h", "o", and "q" and performs actions based on the command that
+     * the letters correspond to.
      */
 
     void play() {
-        Scanner scanner = new Scanner(System.in); 
+        play(null);
+    }
+
+    /**
+     * Runs the game like play(), drawing with the given renderer if there is
+     * one. A renderer only rewrites the squares that changed, and hints and
+     * other messages go to its status line instead of scrolling the board.
+     *
+     * @param TerminalRenderer renderer ANSI renderer, or null to print
+     */
+
+    void play(TerminalRenderer renderer) {
+        // a Scanner would load regular expressions before the first board
+        BufferedReader scanner = new BufferedReader(
+                new InputStreamReader(System.in)); 
+        String message = null;
         while(!currentState.levelPassed) {
-            System.out.println(this.currentState.toString());
-            System.out.print(INPUT);
-            String input = scanner.nextLine();
+            // warns on every turn until the cutting move is undone
+            if(message == null && isDeadEnd()) {
+                message = DEAD_END;
+            }
+            show(renderer, message, INPUT);
+            message = null;
+            String input = readInput(scanner);
+            if(input == null) {
+                // the input ended, as if the player quit
+                return;
+            }
             if(input.equals(UP)) {
                 recordAndMove(Direction.UP);
             }
@@ -191,20 +436,171 @@ public class Streamline {
             else if(input.equals(UNDO)) {
                 undo();
             }
+            else if(input.equals(RESTART)) {
+                restart();
+            }
+            else if(input.equals(HINT)) {
+                Direction hint = getHint();
+                if(hint == null) {
+                    message = NO_HINT;
+                }
+                else {
+                    message = String.format(HINT_MESSAGE,
+                            hint.name().toLowerCase(), getHintDistance());
+                }
+            }
             else if(input.equals(SAVE_TO_FILE)) {
                 saveToFile();
+                if(renderer != null) {
+                    // saveToFile() printed below the prompt, which the
+                    // next frame clears
+                    message = SAVED_SUCCESS;
+                }
             }
             else if(input.equals(QUIT)) {            
                 return;
             }
         }
         if(currentState.levelPassed == true) { 
-            System.out.println(this.currentState.toString());
-            System.out.println(LEVEL_PASSED);
+            show(renderer, LEVEL_PASSED, null);
         }
         return;
     }
 
+    /**
+     * Reads a line typed by the player
+     *
+     * @param BufferedReader reader reader of the input
+     * @return String the line, or null once the input ends
+     */
+
+    private static String readInput(BufferedReader reader) {
+        try {
+            return reader.readLine();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Shows the current state, a message and a prompt, either printed in
+     * full or drawn by the renderer.
+     *
+     * @param TerminalRenderer renderer ANSI renderer, or null to print
+     * @param String message message to show, or null
+     * @param String prompt prompt to show, or null
+     */
+
+    private void show(TerminalRenderer renderer, String message,
+                      String prompt) {
+        if(renderer != null) {
+            renderer.draw(currentState, message, prompt);
+            return;
+        }
+        // a message answering the last input comes before the board, the
+        // closing message after it
+        if(prompt != null && message != null) {
+            System.out.println(message);
+        }
+        System.out.println(this.currentState.toString());
+        if(prompt != null) {
+            System.out.print(prompt);
+        }
+        else if(message != null) {
+            System.out.println(message);
+        }
+    }
+
+    /**
+     * Plays a marathon level, one too large for a GameState, in the terminal.
+     * It takes the same inputs as play() except "o", stops like it when the
+     * input ends, and draws only a window around the player. Undo takes
+     * moves back from a log of moves rather than from copies of the board.
+     *
+     * @param String filename name of the level file
+     */
+
+    static void playMarathon(String filename) throws IOException {
+        ChunkedGameState state = ChunkedGameState.load(filename);
+        List<Direction> directions = new ArrayList<Direction>();
+        List<int[]> moves = new ArrayList<int[]>();
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(System.in));
+        while(!state.levelPassed) {
+            System.out.println(state.renderAroundPlayer(MARATHON_ROWS,
+                        MARATHON_COLS));
+            System.out.print(INPUT);
+            String input = readInput(reader);
+            if(input == null) {
+                // the input ended, as if the player quit
+                return;
+            }
+            Direction direction = null;
+            if(input.equals(UP)) {
+                direction = Direction.UP;
+            }
+            else if(input.equals(LEFT)) {
+                direction = Direction.LEFT;
+            }
+            else if(input.equals(DOWN)) {
+                direction = Direction.DOWN;
+            }
+            else if(input.equals(RIGHT)) {
+                direction = Direction.RIGHT;
+            }
+            else if(input.equals(UNDO) && !directions.isEmpty()) {
+                int last = directions.size() - 1;
+                int[] move = moves.remove(last);
+                state.unmove(directions.remove(last), move[0],
+                        (char) move[1], false);
+            }
+            else if(input.equals(QUIT)) {
+                return;
+            }
+            if(direction != null) {
+                char startChar = state.board.get(state.playerRow,
+                        state.playerCol);
+                int steps = state.move(direction);
+                // only moves that changed the board can be undone
+                if(steps > 0) {
+                    directions.add(direction);
+                    moves.add(new int[]{steps, startChar});
+                }
+            }
+        }
+        System.out.println(state.renderAroundPlayer(MARATHON_ROWS,
+                    MARATHON_COLS));
+        System.out.println(LEVEL_PASSED);
+    }
+
+    /**
+     * Plays the level file given on the command line, or a random level if
+     * there is none, in the terminal. With --ansi the board is drawn by a
+     * TerminalRenderer. With --script the rest of the command line goes to
+     * ScriptRunner instead.
+     */
+
+    public static void main(String[] args) throws IOException {
+        if(args.length > 0 && args[0].equals(SCRIPT_OPTION)) {
+            ScriptRunner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        boolean ansi = false;
+        String filename = null;
+        for(String arg : args) {
+            if(arg.equals(ANSI_OPTION)) {
+                ansi = true;
+            }
+            else {
+                filename = arg;
+            }
+        }
+        Streamline game = filename == null ? new Streamline()
+            : new Streamline(filename);
+        game.play(ansi ? new TerminalRenderer(System.out) : null);
+    }
+
     /**
      * Saves the current state of the board including the board height, board
      * width, player row, player column, goal row, goal column and positions
@@ -212,35 +608,51 @@ public class Streamline {
      */
 
     void saveToFile() {
-        String filename = OUTFILE_NAME;
         try {
-            PrintWriter writer = new PrintWriter(filename);
+            writeState(currentState, OUTFILE_NAME);
+            System.out.println(SAVED_SUCCESS);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes a game state to a file in the format read by readState(), for
+     * tools that write levels of their own.
+     *
+     * @param GameState state state to write
+     * @param String filename name of file to write
+     */
+
+    static void writeState(GameState state, String filename)
+        throws IOException {
+        try(PrintWriter writer = new PrintWriter(new BufferedWriter(
+                        new FileWriter(filename)))) {
             // prints first line with board height and board width
-            writer.print(String.valueOf(currentState.board.length));
+            writer.print(String.valueOf(state.board.length));
             writer.print(SPACE_STRING);
-            writer.print(String.valueOf(currentState.board[0].length));
+            writer.print(String.valueOf(state.board[0].length));
             // prints second line with player row and player column
             writer.print(LINE_STRING);
-            writer.print(String.valueOf(currentState.playerRow));
+            writer.print(String.valueOf(state.playerRow));
             writer.print(SPACE_STRING);
-            writer.print(String.valueOf(currentState.playerCol));
+            writer.print(String.valueOf(state.playerCol));
             // prints third line with goal row and goal column
             writer.print(LINE_STRING);
-            writer.print(String.valueOf(currentState.goalRow));
+            writer.print(String.valueOf(state.goalRow));
             writer.print(SPACE_STRING);
-            writer.print(String.valueOf(currentState.goalCol));
+            writer.print(String.valueOf(state.goalCol));
             // prints the board
             writer.print(LINE_STRING);
-            for(int i = 0; i < DEFAULT_HEIGHT; i++) {
-                for(int j = 0; j < DEFAULT_WIDTH; j++) {
-                    writer.print(currentState.board[i][j]);
+            for(int i = 0; i < state.board.length; i++) {
+                for(int j = 0; j < state.board[i].length; j++) {
+                    writer.print(state.board[i][j]);
                 }
                 writer.print(LINE_STRING);
             }
-            writer.close();
-            System.out.println(SAVED_SUCCESS);
-        } catch (IOException e) {
-            e.printStackTrace();
+            if(writer.checkError()) {
+                throw new IOException("could not write " + filename);
+            }
         }
     }
 }
@@ -0,0 +1,174 @@
+/**
+ * File: TerminalRenderer.java
+ *
+ * Included below is a renderer for playing Streamline in a terminal that
+ * understands ANSI escape codes. Instead of printing the whole board after
+ * every move it draws the board once and afterwards only rewrites the
+ * squares that changed.
+ */
+
+import java.io.*;
+
+/**
+ * The TerminalRenderer class remembers what it last drew on every square.
+ * Each frame is compared with that, cursor positioning codes are added for
+ * the squares that differ, and the whole frame, status line and prompt
+ * included, goes out in a single write. The screen is laid out exactly like
+ * GameState.toString(), so it looks the same as the plain terminal game.
+ */
+
+public class TerminalRenderer {
+
+    // ANSI control sequences
+    private static final String ESCAPE = "\u001b[";
+    private static final String HOME = ESCAPE + "H";
+    private static final String CLEAR_SCREEN = ESCAPE + "2J";
+    private static final String CLEAR_BELOW = ESCAPE + "J";
+    private static final char POSITION_SEPARATOR = ';';
+    private static final char POSITION_END = 'H';
+
+    // screen line of the first row and screen column of the first square,
+    // both counted from 1, and columns taken by each square
+    private static final int FIRST_LINE = 2;
+    private static final int FIRST_COLUMN = 3;
+    private static final int COLUMN_MULTIPLE = 2;
+
+    // borders of game board, as drawn by GameState
+    private static final char UPPER_BORDER = '-';
+    private static final int UPPER_BORDER_EXTRA = 3;
+    private static final char SIDE_BORDER = '|';
+
+    private final PrintStream out;
+
+    // the next frame, reused from frame to frame
+    private final StringBuilder frame = new StringBuilder();
+
+    // what is on screen for every square, null before the first frame
+    private char[][] shown;
+
+    /**
+     * Creates a renderer writing to the given stream
+     *
+     * @param PrintStream out terminal to draw on
+     */
+
+    public TerminalRenderer(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Draws a frame. The first frame, and any frame after the size of the
+     * board changed, clears the screen and draws the whole board; later
+     * frames only rewrite the squares that changed. The
+     * status and prompt are written below the board over whatever was there.
+     *
+     * @param GameState state state to draw
+     * @param String status line shown below the board, or null
+     * @param String prompt text left before the cursor, or null
+     */
+
+    void draw(GameState state, String status, String prompt) {
+        int height = state.board.length;
+        int width = state.board[0].length;
+        frame.setLength(0);
+
+        if(shown == null || shown.length != height ||
+                shown[0].length != width) {
+            drawAll(state);
+        }
+        else {
+            for(int i = 0; i < height; i++) {
+                for(int j = 0; j < width; j++) {
+                    char square = squareAt(state, i, j);
+                    if(square != shown[i][j]) {
+                        shown[i][j] = square;
+                        moveTo(FIRST_LINE + i,
+                                FIRST_COLUMN + COLUMN_MULTIPLE * j);
+                        frame.append(square);
+                    }
+                }
+            }
+        }
+
+        // the line below the lower border
+        moveTo(FIRST_LINE + height + 1, 1);
+        frame.append(CLEAR_BELOW);
+        if(status != null) {
+            frame.append(status).append(GameState.NEWLINE_CHAR);
+        }
+        if(prompt != null) {
+            frame.append(prompt);
+        }
+        out.append(frame);
+        out.flush();
+    }
+
+    /**
+     * Clears the screen and adds the whole board to the frame
+     *
+     * @param GameState state state to draw
+     */
+
+    private void drawAll(GameState state) {
+        int height = state.board.length;
+        int width = state.board[0].length;
+        shown = new char[height][width];
+        frame.append(HOME).append(CLEAR_SCREEN);
+        appendBorder(width);
+        for(int i = 0; i < height; i++) {
+            frame.append(SIDE_BORDER).append(GameState.SPACE_CHAR);
+            for(int j = 0; j < width; j++) {
+                shown[i][j] = squareAt(state, i, j);
+                frame.append(shown[i][j]).append(GameState.SPACE_CHAR);
+            }
+            frame.append(SIDE_BORDER).append(GameState.NEWLINE_CHAR);
+        }
+        appendBorder(width);
+    }
+
+    /**
+     * Adds an upper or lower border for the given number of columns
+     *
+     * @param int width number of columns drawn
+     */
+
+    private void appendBorder(int width) {
+        for(int i = 0; i < COLUMN_MULTIPLE * width + UPPER_BORDER_EXTRA;
+                i++) {
+            frame.append(UPPER_BORDER);
+        }
+        frame.append(GameState.NEWLINE_CHAR);
+    }
+
+    /**
+     * Adds a cursor move to the given screen position to the frame
+     *
+     * @param int line screen line, from 1
+     * @param int column screen column, from 1
+     */
+
+    private void moveTo(int line, int column) {
+        frame.append(ESCAPE).append(line).append(POSITION_SEPARATOR)
+            .append(column).append(POSITION_END);
+    }
+
+    /**
+     * Returns the character drawn on a square, with the goal drawn over the
+     * player as in GameState.toString()
+     *
+     * @param GameState state state to draw
+     * @param int row row of the square
+     * @param int col column of the square
+     * @return char character to draw
+     */
+
+    private static char squareAt(GameState state, int row, int col) {
+        if(row == state.goalRow && col == state.goalCol) {
+            return GameState.GOAL_CHAR;
+        }
+        if(row == state.playerRow && col == state.playerCol) {
+            return GameState.CURRENT_CHAR;
+        }
+        return state.board[row][col];
+    }
+}
@@ -0,0 +1,273 @@
+/**
+ * File: ThumbnailGenerator.java
+ *
+ * Included below is a command line tool that draws a small picture of every
+ * level in a directory, for level select screens and pack listings. It runs
+ * without a display and without starting JavaFX.
+ */
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.awt.image.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.atomic.*;
+import java.util.stream.*;
+import javax.imageio.*;
+
+/**
+ * The ThumbnailGenerator class draws levels into BufferedImages with
+ * Java2D, in the colors and proportions of GuiStreamline, and writes them as
+ * PNG files on all cores at once.
+ *
+ * Each thumbnail is named after the fingerprint of the level it shows and
+ * its size, so a level that did not change since the last run already has
+ * its picture and is not drawn again, whatever its file is called. Only
+ * levels that are new or were edited are drawn. Every run also writes an
+ * index that maps each level file to its thumbnail.
+ */
+
+public class ThumbnailGenerator {
+    static final String USAGE =
+        "Usage: \n" +
+        "> java ThumbnailGenerator <levels> <thumbnails>         - to draw " +
+        "the levels of a\n" +
+        "                                                           director" +
+        "y that changed\n" +
+        "> java ThumbnailGenerator <levels> <thumbnails> <size>  - to choose" +
+        " the size in pixels\n";
+
+    // longer side of a thumbnail in pixels unless asked otherwise
+    static final int DEFAULT_SIZE = 128;
+
+    // the colors of GuiStreamline and Player, without loading JavaFX
+    static final Color BACKGROUND_COLOR = new Color(220, 220, 220);
+    static final Color TRAIL_COLOR = new Color(138, 43, 226);
+    static final Color GOAL_COLOR = new Color(0, 128, 0);
+    static final Color OBSTACLE_COLOR = new Color(105, 105, 105);
+    static final Color PLAYER_COLOR = new Color(138, 43, 226);
+    static final Color PLAYER_STROKE_COLOR = new Color(230, 230, 250);
+
+    // proportions of a square, as in GuiStreamline and RoundedSquare
+    private static final double TRAIL_RADIUS_FRACTION = 0.1;
+    private static final double SQUARE_FRACTION = 0.8;
+    private static final double ARC_FRACTION = 0.325;
+    private static final double STROKE_FRACTION = 0.1;
+    private static final double HALF = 0.5;
+
+    // output
+    private static final String THUMBNAIL_NAME = "%016x-%d.png";
+    private static final String IMAGE_FORMAT = "png";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String INDEX_NAME = "thumbnails.csv";
+    private static final String INDEX_HEADER = "level,fingerprint,thumbnail";
+    private static final String INDEX_ROW = "%s,%016x,%s";
+
+    // report statements
+    private static final String SUMMARY =
+        "%d levels: %d drawn, %d unchanged, %d unreadable in %d ms";
+    private static final String UNREADABLE = "Skipping unreadable level %s";
+
+    private final Path outputDirectory;
+    private final int size;
+
+    private final AtomicInteger drawn = new AtomicInteger();
+    private final AtomicInteger unchanged = new AtomicInteger();
+    private final AtomicInteger unreadable = new AtomicInteger();
+
+    /**
+     * Prepares a generator writing to the given directory
+     *
+     * @param Path outputDirectory directory for the thumbnails
+     * @param int size longer side of a thumbnail in pixels
+     */
+
+    ThumbnailGenerator(Path outputDirectory, int size) {
+        this.outputDirectory = outputDirectory;
+        this.size = size;
+    }
+
+    /**
+     * Draws a level as GuiStreamline shows it at the start
+     *
+     * @param GameState state level to draw
+     * @param int size longer side of the image in pixels
+     * @return BufferedImage picture of the level
+     */
+
+    static BufferedImage draw(GameState state, int size) {
+        int height = state.board.length;
+        int width = state.board[0].length;
+        double square = Math.max(1.0, (double) size / Math.max(height, width));
+        int imageWidth = Math.max(1, (int) Math.round(square * width));
+        int imageHeight = Math.max(1, (int) Math.round(square * height));
+
+        BufferedImage image = new BufferedImage(imageWidth, imageHeight,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                    RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.setColor(BACKGROUND_COLOR);
+            graphics.fillRect(0, 0, imageWidth, imageHeight);
+
+            double radius = square * TRAIL_RADIUS_FRACTION;
+            for(int row = 0; row < height; row++) {
+                for(int col = 0; col < width; col++) {
+                    double centerX = (col + HALF) * square;
+                    double centerY = (row + HALF) * square;
+                    char character = state.board[row][col];
+                    if(character == GameState.OBSTACLE_CHAR) {
+                        graphics.setColor(OBSTACLE_COLOR);
+                        graphics.fill(roundedSquare(centerX, centerY,
+                                    square * SQUARE_FRACTION));
+                    }
+                    else if(character == GameState.TRAIL_CHAR) {
+                        graphics.setColor(TRAIL_COLOR);
+                        graphics.fill(new Ellipse2D.Double(centerX - radius,
+                                    centerY - radius, 2 * radius,
+                                    2 * radius));
+                    }
+                }
+            }
+
+            graphics.setColor(GOAL_COLOR);
+            graphics.fill(roundedSquare((state.goalCol + HALF) * square,
+                        (state.goalRow + HALF) * square,
+                        square * SQUARE_FRACTION));
+
+            // the player's border is centered on its edge, as in Player
+            double playerSize = square * SQUARE_FRACTION;
+            double strokeWidth = playerSize * STROKE_FRACTION;
+            Shape player = roundedSquare((state.playerCol + HALF) * square,
+                    (state.playerRow + HALF) * square,
+                    playerSize - strokeWidth);
+            graphics.setColor(PLAYER_COLOR);
+            graphics.fill(player);
+            graphics.setColor(PLAYER_STROKE_COLOR);
+            graphics.setStroke(new BasicStroke((float) strokeWidth));
+            graphics.draw(player);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Returns a square with rounded corners around the given center
+     *
+     * @param double centerX x coordinate of the center
+     * @param double centerY y coordinate of the center
+     * @param double side length of a side
+     * @return Shape the square
+     */
+
+    private static Shape roundedSquare(double centerX, double centerY,
+                                       double side) {
+        double arc = side * ARC_FRACTION;
+        return new RoundRectangle2D.Double(centerX - side * HALF,
+                centerY - side * HALF, side, side, arc, arc);
+    }
+
+    /**
+     * Makes sure the thumbnail of a level file exists, drawing it only if no
+     * thumbnail of the same level was written before
+     *
+     * @param Path file level file
+     * @return String index row of the level, or null if it is unreadable
+     */
+
+    private String thumbnail(Path file) {
+        GameState state;
+        try {
+            state = Streamline.readState(file.toString());
+        } catch (IOException | RuntimeException e) {
+            System.err.println(String.format(UNREADABLE, file));
+            unreadable.incrementAndGet();
+            return null;
+        }
+
+        long fingerprint = LevelSymmetry.fingerprint(state);
+        String name = String.format(THUMBNAIL_NAME, fingerprint, size);
+        Path target = outputDirectory.resolve(name);
+        if(Files.exists(target)) {
+            unchanged.incrementAndGet();
+        }
+        else {
+            // written under a temporary name, so an interrupted run never
+            // leaves a broken thumbnail that later runs would keep
+            Path temp = outputDirectory.resolve(name + TEMP_SUFFIX + "." +
+                    Thread.currentThread().getId());
+            try {
+                if(!ImageIO.write(draw(state, size), IMAGE_FORMAT,
+                            temp.toFile())) {
+                    throw new IOException(IMAGE_FORMAT);
+                }
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            drawn.incrementAndGet();
+        }
+        return String.format(INDEX_ROW, file.getFileName(), fingerprint,
+                name);
+    }
+
+    /**
+     * Brings the thumbnails of every level file in a directory up to date
+     * and writes their index
+     *
+     * @param Path levelDirectory directory of level files
+     */
+
+    void run(Path levelDirectory) throws IOException {
+        Files.createDirectories(outputDirectory);
+        List<Path> files;
+        try(Stream<Path> listing = Files.list(levelDirectory)) {
+            files = listing.filter(Files::isRegularFile).sorted()
+                .collect(Collectors.toList());
+        }
+
+        // the stream keeps the directory order, however the work is split
+        List<String> rows = files.parallelStream()
+            .map(this::thumbnail)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+
+        try(PrintWriter index = new PrintWriter(Files.newBufferedWriter(
+                        outputDirectory.resolve(INDEX_NAME)))) {
+            index.println(INDEX_HEADER);
+            for(String row : rows) {
+                index.println(row);
+            }
+        }
+    }
+
+    /**
+     * Draws the thumbnails of the directory given on the command line
+     */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 && args.length != 3) {
+            System.out.print(USAGE);
+            return;
+        }
+        // Java2D must not look for a display
+        System.setProperty("java.awt.headless", "true");
+
+        int size = args.length == 3 ? Integer.parseInt(args[2])
+            : DEFAULT_SIZE;
+        long startTime = System.currentTimeMillis();
+        ThumbnailGenerator generator = new ThumbnailGenerator(
+                Paths.get(args[1]), size);
+        generator.run(Paths.get(args[0]));
+        System.out.println(String.format(SUMMARY,
+                    generator.drawn.get() + generator.unchanged.get() +
+                    generator.unreadable.get(), generator.drawn.get(),
+                    generator.unchanged.get(), generator.unreadable.get(),
+                    System.currentTimeMillis() - startTime));
+    }
+}